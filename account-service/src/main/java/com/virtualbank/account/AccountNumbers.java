@@ -0,0 +1,86 @@
+package com.virtualbank.account;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Issues account numbers without asking the database whether each one is free.
+ * The account_number_blocks sequence hands every instance its own block of
+ * values, one {@code nextval} per {@value #BLOCK_SIZE} numbers, and the block is
+ * issued from memory; no two instances ever share a value. A number is the value
+ * zero-padded to 12 digits followed by its Luhn check digit, so a mistyped digit
+ * or a swap of neighbours is caught before any lookup.
+ *
+ * <p>Values of a block still unissued when the instance stops are skipped, never
+ * reused, so numbers are unique and increasing per instance but not gapless.
+ */
+@Component
+public class AccountNumbers {
+
+    /** The sequence's increment (V13). */
+    static final int BLOCK_SIZE = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    /** Next value to issue and the end of the current block. Guarded by this. */
+    private long next;
+    private long end;
+
+    public AccountNumbers(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public synchronized String next() {
+        if (next == end) {
+            reserveBlock();
+        }
+        return format(next++);
+    }
+
+    /** {@code count} numbers at once, reserving as many blocks as they need. */
+    public synchronized List<String> next(int count) {
+        List<String> numbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(next());
+        }
+        return numbers;
+    }
+
+    /** Whether the number is 13 digits whose last is the Luhn check digit of the rest. */
+    public static boolean isValid(String number) {
+        return number != null && number.length() == 13 && number.chars().allMatch(Character::isDigit)
+                && number.charAt(12) - '0' == checkDigit(number.substring(0, 12));
+    }
+
+    static String format(long value) {
+        String digits = "%012d".formatted(value);
+        return digits + checkDigit(digits);
+    }
+
+    /** The Luhn digit that makes {@code digits} plus itself sum to a multiple of ten. */
+    static int checkDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private void reserveBlock() {
+        Long start = jdbc.queryForObject("select nextval('account_number_blocks')", Long.class);
+        next = start;
+        end = start + BLOCK_SIZE;
+    }
+}
@@ -3,76 +3,125 @@ package com.virtualbank.account;
 import com.virtualbank.account.domain.Account;
 import com.virtualbank.account.domain.AccountRepository;
 import com.virtualbank.account.domain.AccountStatus;
+import com.virtualbank.account.hot.HotAccounts;
+import com.virtualbank.account.ledger.BalanceSnapshots;
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.Ledger;
 import com.virtualbank.account.web.dto.CreateAccountRequest;
 import com.virtualbank.common.web.ApiException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.security.SecureRandom;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * Create, read, and freeze accounts. Ownership is always the caller's token
- * subject; reads and the freeze enforce that the caller owns the account.
+ * subject; reads and the freeze enforce that the caller owns the account. Every
+ * account returned here reports its whole balance: the off-row parts that
+ * {@link Account#getBalance()} adds are read in one query per call.
  */
 @Service
 public class AccountService {
 
-    private static final SecureRandom RANDOM = new SecureRandom();
-
     private final AccountRepository accounts;
+    private final AccountNumbers accountNumbers;
+    private final HotAccounts hotAccounts;
+    private final CreditCoalescer creditCoalescer;
+    private final Ledger ledger;
+    private final BalanceSnapshots snapshots;
     private final Clock clock;
 
-    public AccountService(AccountRepository accounts, Clock clock) {
+    public AccountService(AccountRepository accounts, AccountNumbers accountNumbers, HotAccounts hotAccounts,
+                          CreditCoalescer creditCoalescer, Ledger ledger, BalanceSnapshots snapshots, Clock clock) {
         this.accounts = accounts;
+        this.accountNumbers = accountNumbers;
+        this.hotAccounts = hotAccounts;
+        this.creditCoalescer = creditCoalescer;
+        this.ledger = ledger;
+        this.snapshots = snapshots;
         this.clock = clock;
     }
 
     @Transactional
     public Account create(String ownerId, CreateAccountRequest request) {
+        return opened(accounts.save(open(ownerId, accountNumbers.next(), request, Instant.now(clock))));
+    }
+
+    /**
+     * Opens many accounts for the caller in one transaction: the numbers come from
+     * memory in one go, and Hibernate sends the inserts as JDBC batches. All or
+     * none are opened.
+     */
+    @Transactional
+    public List<Account> createAll(String ownerId, List<CreateAccountRequest> requests) {
         Instant now = Instant.now(clock);
-        Account account = new Account(
-                UUID.randomUUID().toString(),
-                ownerId,
-                generateAccountNumber(),
-                request.type(),
-                BigDecimal.ZERO,
-                request.currency(),
-                AccountStatus.ACTIVE,
-                now,
-                now);
-        return accounts.save(account);
+        List<String> numbers = accountNumbers.next(requests.size());
+        List<Account> opened = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            opened.add(open(ownerId, numbers.get(i), requests.get(i), now));
+        }
+        List<Account> saved = accounts.saveAll(opened);
+        saved.forEach(AccountService::opened);
+        return saved;
     }
 
     @Transactional(readOnly = true)
     public List<Account> listOwnedBy(String ownerId) {
-        return accounts.findByOwnerId(ownerId);
+        return withOffRowBalances(accounts.findByOwnerId(ownerId));
     }
 
     @Transactional(readOnly = true)
     public Account getOwned(String accountId, String ownerId) {
-        return requireOwned(accountId, ownerId);
+        return withOffRowBalance(requireOwned(accountId, ownerId));
+    }
+
+    /** The balance of one of the caller's accounts as it stood at {@code asOf}, replayed from the journal. */
+    @Transactional(readOnly = true)
+    public BigDecimal balanceAsOf(String accountId, String ownerId, Instant asOf) {
+        requireOwned(accountId, ownerId);
+        return snapshots.balanceAsOf(accountId, asOf);
     }
 
     @Transactional
     public Account freeze(String accountId, String ownerId) {
-        Account account = requireOwned(accountId, ownerId);
+        Account account = withOffRowBalance(requireOwned(accountId, ownerId));
         account.freeze(Instant.now(clock));
         return account;
     }
 
-    /** Adds funds to one of the caller's accounts. Stands in for an external deposit. */
-    @Transactional
+    /**
+     * Adds funds to one of the caller's accounts. Stands in for an external deposit.
+     * Not transactional: the account is read once for the ownership check, and the
+     * credit itself is one atomic write (an update coalesced with concurrent
+     * deposits, a bucket of a hot account, or in compacted ledger mode just a
+     * pending journal entry), so deposits never race on the version. The returned
+     * copy is detached and shows the balance right after this deposit.
+     */
     public Account deposit(String accountId, String ownerId, BigDecimal amount) {
-        Account account = requireOwned(accountId, ownerId);
+        Account account = withOffRowBalance(requireOwned(accountId, ownerId));
         if (!account.isActive()) {
             throw ApiException.badRequest("Cannot deposit into a frozen account");
         }
-        account.credit(amount, Instant.now(clock));
+        if (account.isHot()) {
+            if (!hotAccounts.deposit(accountId, account.getBucketCount(), amount)) {
+                throw ApiException.badRequest("Cannot deposit into a frozen account");
+            }
+            account.bucketsChanged(amount);
+        } else if (ledger.defersCredits()) {
+            if (!ledger.appendPending(Entry.deposit(accountId, amount), Instant.now(clock))) {
+                throw ApiException.badRequest("Cannot deposit into a frozen account");
+            }
+            account.pendingCredited(amount);
+        } else {
+            account.credited(creditCoalescer.credit(accountId, amount), Instant.now(clock));
+        }
         return account;
     }
 
@@ -85,11 +134,43 @@ public class AccountService {
         return account;
     }
 
-    private String generateAccountNumber() {
-        String number;
-        do {
-            number = String.format("%012d", Math.abs(RANDOM.nextLong()) % 1_000_000_000_000L);
-        } while (accounts.existsByAccountNumber(number));
-        return number;
+    private Account withOffRowBalance(Account account) {
+        withOffRowBalances(List.of(account));
+        return account;
+    }
+
+    private List<Account> withOffRowBalances(List<Account> loaded) {
+        if (loaded.isEmpty()) {
+            return loaded;
+        }
+        Map<String, AccountRepository.OffRowBalance> parts = new HashMap<>();
+        for (AccountRepository.OffRowBalance part : accounts.findOffRowBalances(
+                loaded.stream().map(Account::getId).toList())) {
+            parts.put(part.getId(), part);
+        }
+        for (Account account : loaded) {
+            AccountRepository.OffRowBalance part = parts.get(account.getId());
+            account.offRowBalanceRead(part.getBuckets(), part.getPending());
+        }
+        return loaded;
+    }
+
+    /** A newly opened account has no bucket rows and no journal entries, so nothing off-row to read. */
+    private static Account opened(Account account) {
+        account.offRowBalanceRead(BigDecimal.ZERO, BigDecimal.ZERO);
+        return account;
+    }
+
+    private static Account open(String ownerId, String accountNumber, CreateAccountRequest request, Instant now) {
+        return new Account(
+                UUID.randomUUID().toString(),
+                ownerId,
+                accountNumber,
+                request.type(),
+                BigDecimal.ZERO,
+                request.currency(),
+                AccountStatus.ACTIVE,
+                now,
+                now);
     }
 }
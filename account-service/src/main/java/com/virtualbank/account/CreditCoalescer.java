@@ -0,0 +1,149 @@
+package com.virtualbank.account;
+
+import com.virtualbank.common.web.ApiException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Applies concurrent credits to the same account as one update. Credits commute,
+ * so instead of each deposit loading, changing and saving the account (and
+ * losing optimistic-lock races to its neighbours), the first credit for an
+ * account opens a short window, every credit arriving within it joins, and the
+ * window closes with a single
+ * {@code UPDATE accounts SET balance = balance + :sum ... RETURNING balance}.
+ * The same statement journals one DEPOSIT entry per credit. Each caller then
+ * gets the balance as it stood right after its own credit, in arrival order, as
+ * though the credits had run one by one.
+ *
+ * <p>The update only matches an active account; if the account was frozen in
+ * the meantime every credit in the window fails. The window is
+ * {@code vbank.deposits.coalesce-window-ms}.
+ */
+@Component
+public class CreditCoalescer implements DisposableBean {
+
+    private static final long WAIT_SECONDS = 10;
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final long windowMs;
+    private final ConcurrentHashMap<String, Window> open = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("credit-coalescer").daemon().factory());
+    private final ExecutorService flushers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CreditCoalescer(JdbcTemplate jdbc, Clock clock,
+                           @Value("${vbank.deposits.coalesce-window-ms:2}") long windowMs) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.windowMs = windowMs;
+    }
+
+    /** Credits the account and returns its balance right after this credit. Blocks until the window is applied. */
+    public BigDecimal credit(String accountId, BigDecimal amount) {
+        Credit credit = new Credit(amount, new CompletableFuture<>());
+        while (!open.computeIfAbsent(accountId, this::openWindow).add(credit)) {
+            // The window closed between lookup and add; the next lookup opens a fresh one.
+        }
+        try {
+            return credit.balance().get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while crediting " + accountId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Could not credit " + accountId, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out crediting " + accountId, e);
+        }
+    }
+
+    private Window openWindow(String accountId) {
+        Window window = new Window();
+        timer.schedule(() -> flushers.execute(() -> apply(accountId, window)), windowMs, TimeUnit.MILLISECONDS);
+        return window;
+    }
+
+    private void apply(String accountId, Window window) {
+        open.remove(accountId, window);
+        List<Credit> credits = window.close();
+        BigDecimal sum = credits.stream().map(Credit::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        String amounts = credits.stream().map(credit -> credit.amount().toPlainString())
+                .collect(Collectors.joining(",", "{", "}"));
+        OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC);
+        try {
+            List<BigDecimal> balances = jdbc.queryForList("""
+                    with credited as (
+                        update accounts set balance = balance + ?, updated_at = ?, version = version + 1
+                        where id = ? and status = 'ACTIVE'
+                        returning id, balance),
+                    journaled as (
+                        insert into account_entries (account_id, kind, amount, materialized, created_at)
+                        select credited.id, 'DEPOSIT', amount, true, ?
+                        from credited, unnest(cast(? as numeric[])) as amount)
+                    select balance from credited
+                    """, BigDecimal.class, sum, now, accountId, now, amounts);
+            if (balances.isEmpty()) {
+                ApiException frozen = ApiException.badRequest("Cannot deposit into a frozen account");
+                credits.forEach(credit -> credit.balance().completeExceptionally(frozen));
+                return;
+            }
+            BigDecimal running = balances.getFirst().subtract(sum);
+            for (Credit credit : credits) {
+                running = running.add(credit.amount());
+                credit.balance().complete(running);
+            }
+        } catch (RuntimeException e) {
+            credits.forEach(credit -> credit.balance().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdown();
+        flushers.shutdown();
+    }
+
+    /** The credits collected for one account until its window closes. */
+    private static final class Window {
+        private final List<Credit> credits = new ArrayList<>();
+        private boolean closed;
+
+        synchronized boolean add(Credit credit) {
+            if (closed) {
+                return false;
+            }
+            credits.add(credit);
+            return true;
+        }
+
+        synchronized List<Credit> close() {
+            closed = true;
+            return credits;
+        }
+    }
+
+    private record Credit(BigDecimal amount, CompletableFuture<BigDecimal> balance) {
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.util.backoff.FixedBackOff;
@@ -18,7 +19,10 @@ import org.springframework.util.backoff.FixedBackOff;
  * Kafka wiring for the transfer command listener: the topics this service relies
  * on (the broker does not auto-create them) and a listener factory whose error
  * handler retries a failing record a couple of times and then publishes it to the
- * dead-letter topic so a poison message cannot stall the partition.
+ * dead-letter topic so a poison message cannot stall the partition. The batch
+ * factory serves TransferBatchListener with the same error handler, which reads
+ * the failed index from a BatchListenerFailedException. The deferring factory
+ * serves DeferringTransferCommandListener, which acknowledges records out of order.
  *
  * <p>Gated on a KafkaTemplate so the whole configuration backs off when Kafka
  * autoconfiguration is excluded, as it is in the broker-free tests.
@@ -47,10 +51,15 @@ public class KafkaConfig {
         return TopicBuilder.name(Topics.TRANSFER_EVENTS_DLT).partitions(1).replicas(1).build();
     }
 
+    /** Publishes a failed record to its topic's {@code .DLT}; shared with DeferringTransferCommandListener. */
     @Bean
-    public DefaultErrorHandler transferErrorHandler(KafkaTemplate<String, String> kafkaTemplate) {
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
-        return new DefaultErrorHandler(recoverer, new FixedBackOff(1000L, 2));
+    public DeadLetterPublishingRecoverer transferDeadLetterRecoverer(KafkaTemplate<String, String> kafkaTemplate) {
+        return new DeadLetterPublishingRecoverer(kafkaTemplate);
+    }
+
+    @Bean
+    public DefaultErrorHandler transferErrorHandler(DeadLetterPublishingRecoverer transferDeadLetterRecoverer) {
+        return new DefaultErrorHandler(transferDeadLetterRecoverer, new FixedBackOff(1000L, 2));
     }
 
     @Bean
@@ -68,4 +77,34 @@ public class KafkaConfig {
         factory.getContainerProperties().setObservationEnabled(observationEnabled);
         return factory;
     }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> transferBatchListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            DefaultErrorHandler transferErrorHandler) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setCommonErrorHandler(transferErrorHandler);
+        // Listener observation is per record, so batches are not traced on the consumer side.
+        factory.setBatchListener(true);
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> deferringTransferListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            DefaultErrorHandler transferErrorHandler,
+            @Value("${spring.kafka.listener.observation-enabled:false}") boolean observationEnabled) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setCommonErrorHandler(transferErrorHandler);
+        factory.getContainerProperties().setObservationEnabled(observationEnabled);
+        // A parked command is acknowledged when it is finally applied, after records
+        // that came later; the container holds the commit until the gaps are filled.
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
 }
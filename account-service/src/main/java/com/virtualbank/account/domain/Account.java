@@ -6,6 +6,7 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
 
 import java.math.BigDecimal;
@@ -16,10 +17,24 @@ import java.time.Instant;
  * assigned by the application; ownerId is the JWT subject of the owner, which is
  * how ownership is enforced without trusting any request input.
  *
- * <p>Balances are moved by loading both accounts under a pessimistic write lock
- * (see TransferService), so concurrent debits serialize and cannot double-spend.
- * The {@code @Version} column guards the create and freeze paths that load and
- * save outside that lock.
+ * <p>Balances are moved either by loading both accounts under a pessimistic write
+ * lock or by guarded UPDATE statements (see the TransferEngine implementations),
+ * so concurrent debits serialize and cannot double-spend. The {@code @Version}
+ * column guards the create and freeze paths that load and save outside that lock;
+ * the guarded updates bump it too.
+ *
+ * <p>A hot account ({@code bucketCount > 0}) keeps most of its money in
+ * {@code account_balance_buckets} rows, moved by HotAccounts without touching
+ * this row. {@link #getBalance()} reports the whole balance: this row's part plus
+ * the buckets. The debit and cover checks here only ever see this row's part,
+ * which is what a row-level debit can take.
+ *
+ * <p>Likewise, in compacted ledger mode credits wait in {@code account_entries}
+ * until they are folded into the row; {@link #getBalance()} includes them too.
+ * Those off-row parts are not read with the entity, because the transfer path
+ * loads accounts under row locks and never needs them. A read that reports the
+ * balance fills them in with {@link #offRowBalanceRead}; see
+ * {@link AccountRepository#findOffRowBalances}.
  */
 @Entity
 @Table(name = "accounts")
@@ -41,6 +56,14 @@ public class Account {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal balance;
 
+    /** The part of the balance held in bucket rows; zero for an ordinary account, null until read. */
+    @Transient
+    private BigDecimal bucketBalance;
+
+    /** Credits journaled but not folded into {@code balance} yet; zero in in-place ledger mode, null until read. */
+    @Transient
+    private BigDecimal pendingBalance;
+
     @Column(nullable = false)
     private String currency;
 
@@ -54,6 +77,9 @@ public class Account {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    @Column(name = "bucket_count", nullable = false)
+    private int bucketCount;
+
     @Version
     private Long version;
 
@@ -69,6 +95,8 @@ public class Account {
         this.accountNumber = accountNumber;
         this.type = type;
         this.balance = balance;
+        this.bucketBalance = BigDecimal.ZERO;
+        this.pendingBalance = BigDecimal.ZERO;
         this.currency = currency;
         this.status = status;
         this.createdAt = createdAt;
@@ -79,6 +107,26 @@ public class Account {
         return status == AccountStatus.ACTIVE;
     }
 
+    public boolean isHot() {
+        return bucketCount > 0;
+    }
+
+    /** Fills in the off-row parts of the balance, read apart from the entity. */
+    public void offRowBalanceRead(BigDecimal buckets, BigDecimal pending) {
+        this.bucketBalance = buckets;
+        this.pendingBalance = pending;
+    }
+
+    /** Reflects money moved in the bucket rows on this loaded copy, so a response shows the new total. */
+    public void bucketsChanged(BigDecimal delta) {
+        this.bucketBalance = this.bucketBalance.add(delta);
+    }
+
+    /** Reflects a credit appended to the journal on this loaded copy, so a response shows the new total. */
+    public void pendingCredited(BigDecimal amount) {
+        this.pendingBalance = this.pendingBalance.add(amount);
+    }
+
     public boolean canCover(BigDecimal amount) {
         return balance.compareTo(amount) >= 0;
     }
@@ -93,6 +141,12 @@ public class Account {
         this.updatedAt = when;
     }
 
+    /** Shows a credit applied by a direct update on this detached copy; never saved. */
+    public void credited(BigDecimal newBalance, Instant when) {
+        this.balance = newBalance;
+        this.updatedAt = when;
+    }
+
     public void freeze(Instant when) {
         this.status = AccountStatus.FROZEN;
         this.updatedAt = when;
@@ -114,8 +168,20 @@ public class Account {
         return type;
     }
 
+    /**
+     * The whole balance: this row's part, the bucket rows of a hot account and any
+     * pending credits. Only available once the off-row parts were read, so a copy
+     * loaded for a transfer can never report this row's part as the balance.
+     */
     public BigDecimal getBalance() {
-        return balance;
+        if (bucketBalance == null || pendingBalance == null) {
+            throw new IllegalStateException("Off-row balance of account " + id + " was not read");
+        }
+        return balance.add(bucketBalance).add(pendingBalance);
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
     }
 
     public String getCurrency() {
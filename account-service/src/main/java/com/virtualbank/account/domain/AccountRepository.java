@@ -3,9 +3,13 @@ package com.virtualbank.account.domain;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +17,6 @@ public interface AccountRepository extends JpaRepository<Account, String> {
 
     List<Account> findByOwnerId(String ownerId);
 
-    boolean existsByAccountNumber(String accountNumber);
-
     /**
      * Loads an account taking a row-level write lock so a concurrent transfer
      * touching the same account blocks until this one commits. Used by the
@@ -23,4 +25,79 @@ public interface AccountRepository extends JpaRepository<Account, String> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select a from Account a where a.id = :id")
     Optional<Account> findByIdForUpdate(@Param("id") String id);
+
+    /**
+     * Locks every given account in one statement. The rows are locked in id order,
+     * the same global order the single-transfer path uses, so a batch and a single
+     * transfer cannot deadlock each other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id in :ids order by a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+
+    /** The account's status as committed now, not as a copy loaded earlier in the transaction has it. */
+    @Query("select a.status from Account a where a.id = :id")
+    Optional<AccountStatus> findStatusById(@Param("id") String id);
+
+    /**
+     * The parts of each account's balance kept outside its row: the bucket rows of
+     * a hot account and the credits not yet folded in by the ledger compactor. Read
+     * only where the whole balance is reported, never on the transfer path.
+     */
+    @Query(value = """
+            select a.id as id,
+                   (select coalesce(sum(b.balance), 0) from account_balance_buckets b
+                    where b.account_id = a.id) as buckets,
+                   (select coalesce(sum(e.amount), 0) from account_entries e
+                    where e.account_id = a.id and not e.materialized) as pending
+            from accounts a
+            where a.id in (:ids)
+            """, nativeQuery = true)
+    List<OffRowBalance> findOffRowBalances(@Param("ids") Collection<String> ids);
+
+    /**
+     * Debits the account only if it is active, owned by {@code ownerId}, not hot
+     * and can cover the amount, in one statement. Returns 0 when any condition
+     * fails; a hot account's money moves in its buckets, never in the row.
+     */
+    @Modifying
+    @Query("""
+            update Account a
+            set a.balance = a.balance - :amount, a.updatedAt = :now, a.version = a.version + 1
+            where a.id = :id
+              and a.status = com.virtualbank.account.domain.AccountStatus.ACTIVE
+              and a.ownerId = :ownerId
+              and a.bucketCount = 0
+              and a.balance >= :amount
+            """)
+    int debitIfAllowed(@Param("id") String id, @Param("ownerId") String ownerId,
+                       @Param("amount") BigDecimal amount, @Param("now") Instant now);
+
+    /** Credits the account only if it is active and not hot. Returns 0 when it is missing, not active or hot. */
+    @Modifying
+    @Query("""
+            update Account a
+            set a.balance = a.balance + :amount, a.updatedAt = :now, a.version = a.version + 1
+            where a.id = :id
+              and a.status = com.virtualbank.account.domain.AccountStatus.ACTIVE
+              and a.bucketCount = 0
+            """)
+    int creditIfActive(@Param("id") String id, @Param("amount") BigDecimal amount, @Param("now") Instant now);
+
+    /** Adds {@code delta} (negative to take money back) unconditionally; undoes half of a failed transfer. */
+    @Modifying
+    @Query("""
+            update Account a
+            set a.balance = a.balance + :delta, a.updatedAt = :now, a.version = a.version + 1
+            where a.id = :id
+            """)
+    int adjustBalance(@Param("id") String id, @Param("delta") BigDecimal delta, @Param("now") Instant now);
+
+    interface OffRowBalance {
+        String getId();
+
+        BigDecimal getBuckets();
+
+        BigDecimal getPending();
+    }
 }
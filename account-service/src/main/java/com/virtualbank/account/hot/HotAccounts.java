@@ -0,0 +1,241 @@
+package com.virtualbank.account.hot;
+
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.Ledger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot accounts and the bucket rows that carry their balance. A hot account's
+ * money is spread over {@code bucketCount} rows of {@code account_balance_buckets};
+ * a credit lands in a random bucket and a debit takes a random bucket that can
+ * cover it, skipping buckets other transactions hold, so N concurrent transfers
+ * on one account lock N different rows instead of queueing on the account row.
+ * Only when no single free bucket covers the amount does a debit sweep the
+ * buckets in order, locking them all. A debit or credit only matches while the
+ * account is active, so a freeze stops its buckets as it stops a row; undoing
+ * half of a failed transfer goes through {@link #adjust}, which does not ask.
+ *
+ * <p>Every bucket has its own {@code CHECK (balance >= 0)}, so the total cannot
+ * go negative. The set of hot accounts is cached and refreshed on a schedule, but
+ * it only picks the path a transfer starts on: the engines check the
+ * {@code bucket_count} of the rows they load and hand a hot one over, so money
+ * of a hot account moves in its buckets. Whatever still reaches its row, a
+ * pending credit folded in or a deposit racing the promotion, is spent by a
+ * sweep once the buckets run short.
+ */
+@Component
+public class HotAccounts {
+
+    private static final Logger log = LoggerFactory.getLogger(HotAccounts.class);
+
+    /** Ends a bucket update so it matches only while the account is active, as the row updates do. */
+    private static final String WHILE_ACTIVE = "and exists (select 1 from accounts where id = ? and status = 'ACTIVE')";
+
+    private final JdbcTemplate jdbc;
+    private final Ledger ledger;
+    private final Clock clock;
+
+    private volatile Map<String, Integer> bucketCounts = Map.of();
+
+    public HotAccounts(JdbcTemplate jdbc, Ledger ledger, Clock clock) {
+        this.jdbc = jdbc;
+        this.ledger = ledger;
+        this.clock = clock;
+    }
+
+    public boolean isHot(String accountId) {
+        return bucketCounts.containsKey(accountId);
+    }
+
+    /** Hot accounts and their bucket counts, as this instance currently sees them. */
+    public Map<String, Integer> bucketCounts() {
+        return bucketCounts;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${vbank.hot-accounts.refresh-ms:30000}")
+    public void refresh() {
+        Map<String, Integer> counts = new HashMap<>();
+        jdbc.query("select id, bucket_count from accounts where bucket_count > 0",
+                row -> {
+                    counts.put(row.getString("id"), row.getInt("bucket_count"));
+                });
+        bucketCounts = Map.copyOf(counts);
+    }
+
+    /**
+     * Takes {@code amount} from the account's buckets inside the caller's
+     * transaction, and from its row once they run short, while the account is
+     * active. Returns false, with nothing taken, when it is not active or all of
+     * them together cannot cover it.
+     */
+    public boolean debit(String accountId, BigDecimal amount) {
+        return take(accountId, amount, true);
+    }
+
+    /**
+     * Adds {@code amount} to a random one of the account's {@code buckets} buckets
+     * while the account is active. Returns false, with nothing added, otherwise.
+     */
+    public boolean credit(String accountId, int buckets, BigDecimal amount) {
+        return put(accountId, buckets, amount, true);
+    }
+
+    /**
+     * Moves {@code delta} (negative to take money out) in the account's buckets
+     * whatever its status, to undo half of a failed transfer or to apply a move
+     * decided elsewhere. Returns false, with nothing taken, only when a negative
+     * delta cannot be covered.
+     */
+    public boolean adjust(String accountId, int buckets, BigDecimal delta) {
+        return delta.signum() >= 0 ? put(accountId, buckets, delta, false) : take(accountId, delta.negate(), false);
+    }
+
+    /**
+     * A deposit: credits a bucket and journals it in one transaction. Returns
+     * false, with nothing written, when the account is not active.
+     */
+    @Transactional
+    public boolean deposit(String accountId, int buckets, BigDecimal amount) {
+        if (!credit(accountId, buckets, amount)) {
+            return false;
+        }
+        ledger.append(Entry.deposit(accountId, amount));
+        return true;
+    }
+
+    /**
+     * Makes an account hot: moves its whole balance into {@code buckets} bucket
+     * rows, split evenly with the rounding remainder in bucket 0. Returns false
+     * when the account does not exist or is already hot.
+     */
+    @Transactional
+    public boolean promote(String accountId, int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("A hot account needs at least one bucket");
+        }
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "select balance, bucket_count from accounts where id = ? for update", accountId);
+        if (rows.isEmpty() || ((Number) rows.getFirst().get("bucket_count")).intValue() > 0) {
+            return false;
+        }
+        BigDecimal balance = (BigDecimal) rows.getFirst().get("balance");
+        BigDecimal share = balance.divide(BigDecimal.valueOf(buckets), 2, RoundingMode.DOWN);
+        BigDecimal first = balance.subtract(share.multiply(BigDecimal.valueOf(buckets - 1)));
+        List<Object[]> inserts = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            inserts.add(new Object[]{accountId, bucket, bucket == 0 ? first : share});
+        }
+        jdbc.batchUpdate("insert into account_balance_buckets (account_id, bucket, balance) values (?, ?, ?)",
+                inserts);
+        jdbc.update("""
+                update accounts set balance = 0, bucket_count = ?, updated_at = ?, version = version + 1
+                where id = ?
+                """, buckets, OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC), accountId);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Map<String, Integer> counts = new HashMap<>(bucketCounts);
+                counts.put(accountId, buckets);
+                bucketCounts = Map.copyOf(counts);
+            }
+        });
+        log.info("Account {} is now hot with {} buckets", accountId, buckets);
+        return true;
+    }
+
+    private boolean take(String accountId, BigDecimal amount, boolean whileActive) {
+        String sql = """
+                update account_balance_buckets set balance = balance - ?
+                where (account_id, bucket) = (
+                    select account_id, bucket from account_balance_buckets
+                    where account_id = ? and balance >= ?
+                    order by random()
+                    limit 1
+                    for update skip locked)
+                """;
+        int taken = whileActive
+                ? jdbc.update(sql + WHILE_ACTIVE, amount, accountId, amount, accountId)
+                : jdbc.update(sql, amount, accountId, amount);
+        if (taken == 1) {
+            return true;
+        }
+        return (!whileActive || isActive(accountId)) && sweep(accountId, amount);
+    }
+
+    private boolean put(String accountId, int buckets, BigDecimal amount, boolean whileActive) {
+        int bucket = ThreadLocalRandom.current().nextInt(buckets);
+        String sql = "update account_balance_buckets set balance = balance + ? where account_id = ? and bucket = ?\n";
+        int credited = whileActive
+                ? jdbc.update(sql + WHILE_ACTIVE, amount, accountId, bucket, accountId)
+                : jdbc.update(sql, amount, accountId, bucket);
+        if (credited == 0 && (!whileActive || isActive(accountId))) {
+            throw new IllegalStateException("Hot account " + accountId + " has no bucket " + bucket);
+        }
+        return credited == 1;
+    }
+
+    private boolean isActive(String accountId) {
+        return jdbc.queryForObject("select count(*) from accounts where id = ? and status = 'ACTIVE'",
+                Integer.class, accountId) == 1;
+    }
+
+    /**
+     * Drains buckets in bucket order, then the account row, until the amount is
+     * covered, or takes nothing if it cannot be. The row is only locked when the
+     * buckets fall short.
+     */
+    private boolean sweep(String accountId, BigDecimal amount) {
+        List<Bucket> buckets = jdbc.query(
+                "select bucket, balance from account_balance_buckets where account_id = ? order by bucket for update",
+                (row, i) -> new Bucket(row.getInt("bucket"), row.getBigDecimal("balance")), accountId);
+        BigDecimal available = buckets.stream().map(Bucket::balance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal fromRow = amount.subtract(available).max(BigDecimal.ZERO);
+        if (fromRow.signum() > 0) {
+            BigDecimal row = jdbc.queryForObject(
+                    "select balance from accounts where id = ? for update", BigDecimal.class, accountId);
+            if (row.compareTo(fromRow) < 0) {
+                return false;
+            }
+        }
+        BigDecimal remaining = amount.subtract(fromRow);
+        for (Bucket bucket : buckets) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal take = bucket.balance().min(remaining);
+            if (take.signum() > 0) {
+                jdbc.update("update account_balance_buckets set balance = balance - ? where account_id = ? and bucket = ?",
+                        take, accountId, bucket.bucket());
+                remaining = remaining.subtract(take);
+            }
+        }
+        if (fromRow.signum() > 0) {
+            jdbc.update("update accounts set balance = balance - ?, updated_at = ?, version = version + 1 where id = ?",
+                    fromRow, OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC), accountId);
+        }
+        return true;
+    }
+
+    private record Bucket(int bucket, BigDecimal balance) {
+    }
+}
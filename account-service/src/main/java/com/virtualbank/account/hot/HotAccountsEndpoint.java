@@ -0,0 +1,42 @@
+package com.virtualbank.account.hot;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/hotaccounts}: {@code GET} lists the hot accounts and their
+ * bucket counts, {@code POST /actuator/hotaccounts/{id}} with
+ * {@code {"buckets": n}} splits an account's balance across n bucket rows. Meant
+ * for operators flagging merchant or payroll accounts; there is no way back short
+ * of a migration, because buckets may hold money at any time. For that reason it
+ * is off web exposure unless ACTUATOR_EXPOSURE adds it, and even then needs the
+ * operator scope.
+ */
+@Component
+@Endpoint(id = "hotaccounts")
+public class HotAccountsEndpoint {
+
+    private final HotAccounts hotAccounts;
+
+    public HotAccountsEndpoint(HotAccounts hotAccounts) {
+        this.hotAccounts = hotAccounts;
+    }
+
+    @ReadOperation
+    public Map<String, Integer> hot() {
+        return hotAccounts.bucketCounts();
+    }
+
+    @WriteOperation
+    public Promoted promote(@Selector String id, int buckets) {
+        return new Promoted(id, hotAccounts.promote(id, buckets));
+    }
+
+    public record Promoted(String accountId, boolean promoted) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.virtualbank.account.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+/**
+ * Point-in-time balances from the journal. On a schedule, every account with
+ * entries since the previous run gets a snapshot: its previous snapshot plus the
+ * entries after it. A balance as of T is then the latest snapshot at or before T
+ * (one primary-key probe) plus the entries between it and T (a range of
+ * {@code (account_id, created_at)}), so the cost is bounded by the activity of one
+ * snapshot interval instead of the account's whole history.
+ *
+ * <p>An entry is stamped before its transaction commits, so a snapshot is only
+ * taken up to {@code vbank.ledger.snapshots.settle-ms} ago, by which time every
+ * transaction stamped before it has committed or rolled back. Snapshots are
+ * computed per account from that account's own latest snapshot, so two replicas
+ * running the job at once still write correct rows. Balances before the journal
+ * was introduced (the OPENING entries) read as zero.
+ */
+@Component
+public class BalanceSnapshots {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceSnapshots.class);
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final long settleMs;
+
+    public BalanceSnapshots(JdbcTemplate jdbc, Clock clock,
+                            @Value("${vbank.ledger.snapshots.settle-ms:60000}") long settleMs) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.settleMs = settleMs;
+    }
+
+    @Scheduled(initialDelayString = "${vbank.ledger.snapshots.interval-ms:3600000}",
+            fixedDelayString = "${vbank.ledger.snapshots.interval-ms:3600000}")
+    public void takeSnapshots() {
+        int taken = snapshot(Instant.now(clock).minusMillis(settleMs));
+        if (taken > 0) {
+            log.info("Took balance snapshots of {} accounts", taken);
+        }
+    }
+
+    /** Snapshots, as of {@code cutoff}, every account with entries since the last snapshot run. */
+    public int snapshot(Instant cutoff) {
+        Timestamp previous = jdbc.queryForObject(
+                "select max(taken_at) from account_balance_snapshots", Timestamp.class);
+        OffsetDateTime since = OffsetDateTime.ofInstant(
+                previous == null ? Instant.EPOCH : previous.toInstant(), ZoneOffset.UTC);
+        OffsetDateTime until = OffsetDateTime.ofInstant(cutoff, ZoneOffset.UTC);
+        if (!until.isAfter(since)) {
+            return 0;
+        }
+        return jdbc.update("""
+                insert into account_balance_snapshots (account_id, taken_at, balance)
+                select moved.account_id, ?, coalesce(last.balance, 0) + coalesce((
+                        select sum(e.amount) from account_entries e
+                        where e.account_id = moved.account_id
+                          and e.created_at > coalesce(last.taken_at, '-infinity'::timestamptz)
+                          and e.created_at <= ?), 0)
+                from (select distinct account_id from account_entries
+                      where created_at > ? and created_at <= ?) moved
+                left join lateral (
+                    select taken_at, balance from account_balance_snapshots s
+                    where s.account_id = moved.account_id and s.taken_at <= ?
+                    order by s.taken_at desc
+                    limit 1) last on true
+                on conflict do nothing
+                """, until, until, since, until, until);
+    }
+
+    /** The account's balance as of {@code asOf}: the latest snapshot at or before it plus the entries since. */
+    public BigDecimal balanceAsOf(String accountId, Instant asOf) {
+        OffsetDateTime at = OffsetDateTime.ofInstant(asOf, ZoneOffset.UTC);
+        BigDecimal balance = jdbc.queryForObject("""
+                select coalesce(last.balance, 0) + coalesce((
+                        select sum(e.amount) from account_entries e
+                        where e.account_id = ?
+                          and e.created_at > coalesce(last.taken_at, '-infinity'::timestamptz)
+                          and e.created_at <= ?), 0)
+                from (select 1) one
+                left join lateral (
+                    select taken_at, balance from account_balance_snapshots
+                    where account_id = ? and taken_at <= ?
+                    order by taken_at desc
+                    limit 1) last on true
+                """, BigDecimal.class, accountId, at, accountId, at);
+        return Objects.requireNonNullElse(balance, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,22 @@
+package com.virtualbank.account.ledger;
+
+import java.math.BigDecimal;
+
+/**
+ * One journal line: a signed amount moved on an account, and the transfer that
+ * moved it (null for a deposit).
+ */
+public record Entry(String accountId, String transferId, EntryKind kind, BigDecimal amount) {
+
+    public static Entry debit(String accountId, String transferId, BigDecimal amount) {
+        return new Entry(accountId, transferId, EntryKind.DEBIT, amount.negate());
+    }
+
+    public static Entry credit(String accountId, String transferId, BigDecimal amount) {
+        return new Entry(accountId, transferId, EntryKind.CREDIT, amount);
+    }
+
+    public static Entry deposit(String accountId, BigDecimal amount) {
+        return new Entry(accountId, null, EntryKind.DEPOSIT, amount);
+    }
+}
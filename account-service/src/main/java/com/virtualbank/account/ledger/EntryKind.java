@@ -0,0 +1,14 @@
+package com.virtualbank.account.ledger;
+
+/** What put an entry in the journal. */
+public enum EntryKind {
+    /** The balance an account had when the journal was introduced. */
+    OPENING,
+    DEPOSIT,
+    /** The source side of a transfer; the amount is negative. */
+    DEBIT,
+    /** The destination side of a transfer. */
+    CREDIT,
+    /** A debit given back because the transfer's credit could not be made. */
+    REVERSAL
+}
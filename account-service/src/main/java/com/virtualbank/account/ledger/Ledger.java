@@ -0,0 +1,137 @@
+package com.virtualbank.account.ledger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The append-only journal of every balance movement ({@code account_entries}).
+ * Entries are written inside the caller's transaction, next to the balance
+ * change they record, so the journal and the balances commit together.
+ *
+ * <p>With {@code vbank.ledger.materialization=in-place} (the default) every
+ * entry is already reflected in its account row when it is appended. With
+ * {@code compacted}, a credit to an ordinary account is only appended: nothing
+ * locks or rewrites the destination row, and the balance is the row plus its
+ * unmaterialized entries until {@link LedgerCompactor} folds them in. Debits
+ * always change the row in place, since they must check the funds under a lock;
+ * a debit that the row alone cannot cover folds the account's pending entries
+ * first ({@link #foldPending}) and tries again.
+ *
+ * <p>Folding locks the account row before it touches the entries, as the
+ * compactor does, so a fold and the compactor never wait on each other in
+ * opposite orders.
+ */
+@Component
+public class Ledger {
+
+    private static final String INSERT = """
+            insert into account_entries (account_id, transfer_id, kind, amount, materialized, created_at)
+            values (?, ?, ?, ?, true, ?)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final boolean compacted;
+
+    public Ledger(JdbcTemplate jdbc, Clock clock,
+                  @Value("${vbank.ledger.materialization:in-place}") String materialization) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.compacted = switch (materialization) {
+            case "in-place" -> false;
+            case "compacted" -> true;
+            default -> throw new IllegalArgumentException(
+                    "vbank.ledger.materialization must be in-place or compacted, not " + materialization);
+        };
+    }
+
+    /** Whether credits to ordinary accounts are appended as pending entries instead of updating the row. */
+    public boolean defersCredits() {
+        return compacted;
+    }
+
+    /** Journals entries whose amounts the caller has already applied to the balances. */
+    public void append(Entry... entries) {
+        append(List.of(entries));
+    }
+
+    /** Journals entries whose amounts the caller has already applied to the balances, as one JDBC batch. */
+    public void append(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC);
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            rows.add(new Object[]{entry.accountId(), entry.transferId(), entry.kind().name(), entry.amount(), now});
+        }
+        jdbc.batchUpdate(INSERT, rows);
+    }
+
+    /**
+     * Appends a credit the account row does not include yet, if the account
+     * exists, is active and is not hot. Returns false, with nothing written,
+     * otherwise.
+     */
+    public boolean appendPending(Entry credit, Instant now) {
+        return jdbc.update("""
+                insert into account_entries (account_id, transfer_id, kind, amount, materialized, created_at)
+                select id, ?, ?, ?, false, ? from accounts where id = ? and status = 'ACTIVE' and bucket_count = 0
+                """, credit.transferId(), credit.kind().name(), credit.amount(),
+                OffsetDateTime.ofInstant(now, ZoneOffset.UTC), credit.accountId()) == 1;
+    }
+
+    /**
+     * Folds the pending entries of the given accounts into their rows. When any
+     * has pending entries, all of the given rows are locked first, in id order,
+     * the order the transfer engines lock in; when none has, nothing is locked.
+     * Returns whether anything was folded.
+     */
+    public boolean foldPending(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return false;
+        }
+        List<String> ids = new ArrayList<>(new TreeSet<>(accountIds));
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        List<String> pending = jdbc.queryForList(
+                "select distinct account_id from account_entries where not materialized and account_id in (" + in + ")",
+                String.class, ids.toArray());
+        if (pending.isEmpty()) {
+            return false;
+        }
+        jdbc.queryForList("select id from accounts where id in (" + in + ") order by id for update",
+                String.class, ids.toArray());
+        boolean folded = false;
+        for (String accountId : new TreeSet<>(pending)) {
+            folded |= fold(accountId);
+        }
+        return folded;
+    }
+
+    /**
+     * Moves the account's pending entries into its balance in one statement. The
+     * caller holds the account row lock. Returns false when there was nothing to fold.
+     */
+    boolean fold(String accountId) {
+        return jdbc.update("""
+                with folded as (
+                    update account_entries set materialized = true
+                    where account_id = ? and not materialized
+                    returning amount)
+                update accounts
+                set balance = balance + (select sum(amount) from folded), updated_at = ?, version = version + 1
+                where id = ? and exists (select 1 from folded)
+                """, accountId, OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC), accountId) == 1;
+    }
+}
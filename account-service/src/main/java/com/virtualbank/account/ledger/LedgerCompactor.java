@@ -0,0 +1,64 @@
+package com.virtualbank.account.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Folds pending journal entries into their account rows in the background, one
+ * short transaction per account, so the pending tail a balance read has to sum
+ * stays small. An account whose row another transaction holds is skipped rather
+ * than waited for; it is folded on a later pass, or by the next debit that needs
+ * the money. Runs in both materialization modes, so switching back to in-place
+ * drains whatever compacted mode left pending.
+ */
+@Component
+public class LedgerCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerCompactor.class);
+
+    private final JdbcTemplate jdbc;
+    private final Ledger ledger;
+    private final TransactionTemplate transactions;
+    private final int batchSize;
+
+    public LedgerCompactor(JdbcTemplate jdbc, Ledger ledger, PlatformTransactionManager transactionManager,
+                           @Value("${vbank.ledger.compaction.batch-size:500}") int batchSize) {
+        this.jdbc = jdbc;
+        this.ledger = ledger;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${vbank.ledger.compaction.interval-ms:1000}",
+            fixedDelayString = "${vbank.ledger.compaction.interval-ms:1000}")
+    public void compact() {
+        List<String> accountIds = jdbc.queryForList("""
+                select distinct e.account_id from account_entries e
+                join accounts a on a.id = e.account_id
+                where not e.materialized
+                limit ?
+                """, String.class, batchSize);
+        int folded = 0;
+        for (String accountId : accountIds) {
+            Boolean done = transactions.execute(status -> {
+                List<String> locked = jdbc.queryForList(
+                        "select id from accounts where id = ? for update skip locked", String.class, accountId);
+                return !locked.isEmpty() && ledger.fold(accountId);
+            });
+            if (Boolean.TRUE.equals(done)) {
+                folded++;
+            }
+        }
+        if (folded > 0) {
+            log.debug("Folded pending entries of {} accounts", folded);
+        }
+    }
+}
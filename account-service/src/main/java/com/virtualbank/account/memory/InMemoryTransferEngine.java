@@ -0,0 +1,346 @@
+package com.virtualbank.account.memory;
+
+import com.virtualbank.account.hot.HotAccounts;
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.EntryKind;
+import com.virtualbank.account.ledger.Ledger;
+import com.virtualbank.account.transfer.TransferEngine;
+import com.virtualbank.common.event.TransferEvent;
+import com.virtualbank.common.event.TransferRequested;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Keeps balances in memory, in partitions that each own the accounts whose id
+ * hashes to them and apply every change on one thread, so no lock is taken: a
+ * transfer checks the destination on its partition, debits the source on its
+ * own, then credits the destination, giving the debit back if the destination
+ * stopped being active in between. Every change is in the partition's
+ * memory-mapped journal, synced, before the transfer returns.
+ *
+ * <p>Postgres becomes a snapshot, brought up to date every
+ * {@code vbank.transfer.memory.flush-ms}: each partition's changes since the last
+ * flush are applied as deltas, journaled in {@code account_entries}, and the
+ * partition's last sequence number stored in {@code memory_engine_checkpoints},
+ * in one transaction. Because they are deltas, deposits made in Postgres in the
+ * meantime are kept; the partitions pick them up when they rebase on the
+ * balances the flush read back. On start, each partition reads its journal back
+ * and the records past its checkpoint are flushed before any command is taken.
+ * A hot account's debit its buckets cannot cover is parked, with the rest of
+ * that account's records in the flush, in {@code memory_engine_parked} and
+ * counted in {@code vbank.transfer.memory.parked}; the flush goes on without it.
+ *
+ * <p>The engine moves hot accounts' money itself (whole balance in, bucket rows
+ * out at flush), so {@link com.virtualbank.account.transfer.TransferService} does
+ * not route them to HotAccountTransfers. It assumes it is the only writer of
+ * debits: run one account-service instance with it. Selected by
+ * {@code vbank.transfer.engine=memory}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vbank.transfer", name = "engine", havingValue = "memory")
+public class InMemoryTransferEngine implements TransferEngine, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryTransferEngine.class);
+
+    private static final String ACCOUNT_STATE = """
+            select a.id, a.owner_id, a.status,
+                   a.balance + coalesce((select sum(b.balance) from account_balance_buckets b
+                                         where b.account_id = a.id), 0) as balance
+            from accounts a
+            """;
+
+    private final MemoryEngineProperties properties;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final HotAccounts hotAccounts;
+    private final Ledger ledger;
+    private final Clock clock;
+    private final Counter parkedRecords;
+    private final List<MemoryPartition> partitions = new ArrayList<>();
+
+    private volatile boolean running;
+    /** Guarded by this engine's monitor, like the flush itself. */
+    private int flushes;
+
+    public InMemoryTransferEngine(MemoryEngineProperties properties, JdbcTemplate jdbc,
+                                  PlatformTransactionManager transactionManager, HotAccounts hotAccounts,
+                                  Ledger ledger, Clock clock, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbc = jdbc;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.hotAccounts = hotAccounts;
+        this.ledger = ledger;
+        this.clock = clock;
+        this.parkedRecords = Counter.builder("vbank.transfer.memory.parked")
+                .description("Journal records set aside because their flush could not be applied")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public TransferEvent transfer(TransferRequested command, Instant now) {
+        String transferId = command.transferId();
+        BigDecimal amount = command.amount();
+        MemoryPartition source = partitionOf(command.fromAccountId());
+        MemoryPartition destination = partitionOf(command.toAccountId());
+
+        String reason = await(source.debit(transferId, command.fromAccountId(), command.initiatorId(), amount,
+                await(destination.checkDestination(command.toAccountId()))));
+        if (reason != null) {
+            return new TransferEvent.TransferFailed(transferId, reason, now);
+        }
+        if (!await(destination.credit(transferId, command.toAccountId(), amount))) {
+            await(source.reverse(transferId, command.fromAccountId(), amount));
+            return new TransferEvent.TransferFailed(transferId, MemoryPartition.REVERSED, now);
+        }
+        return new TransferEvent.TransferCompleted(transferId, now);
+    }
+
+    @Override
+    public boolean handlesHotAccounts() {
+        return true;
+    }
+
+    /**
+     * Writes every partition's changes since the last flush to Postgres. A flush
+     * that fails hands its changes back to the partition for the next one; they
+     * are in the journal either way. Synchronized so the flush on stop never runs
+     * next to a scheduled one and stores an older checkpoint after a newer one.
+     */
+    @Scheduled(fixedDelayString = "${vbank.transfer.memory.flush-ms:200}")
+    public synchronized void flush() {
+        if (!running) {
+            return;
+        }
+        boolean rebaseAll = properties.getRebaseEvery() > 0 && ++flushes % properties.getRebaseEvery() == 0;
+        for (MemoryPartition partition : partitions) {
+            flush(partition, rebaseAll);
+        }
+    }
+
+    private void flush(MemoryPartition partition, boolean rebaseAll) {
+        MemoryPartition.Drain drain = await(partition.drain());
+        if (!drain.isEmpty()) {
+            try {
+                transactions.executeWithoutResult(status -> persist(drain));
+            } catch (RuntimeException e) {
+                log.warn("Could not flush partition {}; retrying with the next flush", drain.partition(), e);
+                await(partition.restore(drain));
+                return;
+            }
+        }
+        List<String> rebased = rebaseAll ? await(partition.residentAccounts()) : List.copyOf(drain.deltas().keySet());
+        await(partition.rebase(drain, load(rebased)));
+    }
+
+    private void persist(MemoryPartition.Drain drain) {
+        OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC);
+        Set<String> parked = new HashSet<>();
+        drain.deltas().forEach((accountId, delta) -> {
+            if (delta.signum() == 0) {
+                return;
+            }
+            int updated = jdbc.update("""
+                    update accounts set balance = balance + ?, updated_at = ?, version = version + 1
+                    where id = ? and bucket_count = 0
+                    """, delta, now, accountId);
+            if (updated == 1) {
+                return;
+            }
+            // A hot account: the delta goes to its buckets, as HotAccountTransfers would move it.
+            // The transfers behind it were decided in memory, so its status is not asked again.
+            int buckets = jdbc.queryForObject(
+                    "select bucket_count from accounts where id = ?", Integer.class, accountId);
+            if (!hotAccounts.adjust(accountId, buckets, delta)) {
+                park(drain, accountId, "Hot account buckets cannot cover a flushed debit of " + delta.negate(), now);
+                parked.add(accountId);
+            }
+        });
+        List<Entry> entries = new ArrayList<>(drain.records().size());
+        for (MemoryJournal.Record record : drain.records()) {
+            if (parked.contains(record.accountId())) {
+                continue;
+            }
+            EntryKind kind = EntryKind.valueOf(record.kind().name());
+            entries.add(new Entry(record.accountId(), record.transferId(), kind, record.amount()));
+        }
+        ledger.append(entries);
+        jdbc.update("""
+                insert into memory_engine_checkpoints (partition_id, seq, updated_at) values (?, ?, ?)
+                on conflict (partition_id) do update set seq = excluded.seq, updated_at = excluded.updated_at
+                where memory_engine_checkpoints.seq < excluded.seq
+                """, drain.partition(), drain.seq(), now);
+    }
+
+    /**
+     * Sets an account's records of this flush aside in {@code memory_engine_parked}
+     * rather than failing the flush: one that fails is retried forever, so nothing
+     * else in the partition would reach Postgres again and its journal would never
+     * be truncated. The account's balance in Postgres misses these records until
+     * an operator resolves them, and the partition rebases onto that.
+     */
+    private void park(MemoryPartition.Drain drain, String accountId, String reason, OffsetDateTime now) {
+        List<Object[]> rows = new ArrayList<>();
+        for (MemoryJournal.Record record : drain.records()) {
+            if (record.accountId().equals(accountId)) {
+                rows.add(new Object[] {drain.partition(), record.seq(), record.transferId(), accountId,
+                        record.kind().name(), record.amount(), reason, now});
+            }
+        }
+        jdbc.batchUpdate("""
+                insert into memory_engine_parked
+                    (partition_id, seq, transfer_id, account_id, kind, amount, reason, parked_at)
+                values (?, ?, ?, ?, ?, ?, ?, ?)
+                on conflict do nothing
+                """, rows);
+        parkedRecords.increment(rows.size());
+        log.error("Parked {} journal records of account {} from partition {}: {}",
+                rows.size(), accountId, drain.partition(), reason);
+    }
+
+    /** The accounts as Postgres has them, whole balance of hot accounts included. */
+    private Map<String, MemoryPartition.AccountState> load(List<String> accountIds) {
+        Map<String, MemoryPartition.AccountState> states = new HashMap<>();
+        for (int from = 0; from < accountIds.size(); from += 1000) {
+            List<String> chunk = accountIds.subList(from, Math.min(from + 1000, accountIds.size()));
+            String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbc.query(ACCOUNT_STATE + " where a.id in (" + in + ")",
+                    row -> {
+                        states.put(row.getString("id"), new MemoryPartition.AccountState(
+                                row.getString("owner_id"), row.getString("status"), row.getBigDecimal("balance")));
+                    }, chunk.toArray());
+        }
+        return states;
+    }
+
+    private MemoryPartition.AccountState loadOne(String accountId) {
+        return load(List.of(accountId)).get(accountId);
+    }
+
+    private MemoryPartition partitionOf(String accountId) {
+        return partitions.get(Math.floorMod(accountId.hashCode(), partitions.size()));
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a memory partition", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("A memory partition failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for a memory partition", e);
+        }
+    }
+
+    /** Recovers every partition from its journal and flushes what Postgres has not seen yet. */
+    @Override
+    public void start() {
+        Path dir = properties.getJournalDir();
+        int count = properties.getPartitions();
+        checkNoForeignJournals(dir, count);
+        Map<Integer, Long> checkpoints = new HashMap<>();
+        jdbc.query("select partition_id, seq from memory_engine_checkpoints",
+                row -> {
+                    checkpoints.put(row.getInt("partition_id"), row.getLong("seq"));
+                });
+        for (int id = 0; id < count; id++) {
+            MemoryJournal journal = new MemoryJournal(dir, id, (int) properties.getSegmentSize().toBytes(),
+                    properties.isFsync());
+            MemoryPartition partition = new MemoryPartition(id, journal, this::loadOne,
+                    properties.getRememberedTransfers());
+            partition.recover(checkpoints.getOrDefault(id, 0L));
+            partition.start();
+            partitions.add(partition);
+        }
+        running = true;
+        flush();
+        log.info("In-memory transfer engine running with {} partitions, journal in {}", count, dir);
+    }
+
+    /** Flushes what is left and stops the partitions. */
+    @Override
+    public void stop() {
+        synchronized (this) {
+            flush();
+            running = false;
+        }
+        for (MemoryPartition partition : partitions) {
+            try {
+                partition.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        partitions.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Before the Kafka listener containers start and after they stop, so no command finds the engine down. */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1000;
+    }
+
+    /**
+     * Journals written with more partitions would map their accounts elsewhere
+     * now; refuse to start rather than replay them into the wrong partition.
+     */
+    private static void checkNoForeignJournals(Path dir, int count) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("partition-"))
+                    .filter(name -> Integer.parseInt(name.substring("partition-".length(), name.indexOf('-', 10))) >= count)
+                    .findAny()
+                    .ifPresent(name -> {
+                        throw new IllegalStateException("Journal " + name + " in " + dir + " belongs to a partition"
+                                + " beyond vbank.transfer.memory.partitions=" + count
+                                + "; start with the old partition count and stop cleanly before changing it");
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the journal directory " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.virtualbank.account.memory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/** Tuning for the in-memory transfer engine, bound from {@code vbank.transfer.memory.*}. */
+@Component
+@ConfigurationProperties(prefix = "vbank.transfer.memory")
+@ConditionalOnProperty(prefix = "vbank.transfer", name = "engine", havingValue = "memory")
+public class MemoryEngineProperties {
+
+    /** Partitions, each one thread owning the accounts whose id hashes to it. */
+    private int partitions = 4;
+
+    /**
+     * Where the partitions' journal segments live. Must survive a restart and the
+     * container being recreated, so it belongs on a persistent volume.
+     */
+    private Path journalDir = Path.of("/var/lib/vbank/journal");
+
+    /** Size of one memory-mapped journal segment. */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /** Whether a batch's journal records are forced to disk before it is acknowledged. */
+    private boolean fsync = true;
+
+    /** Transfers per partition remembered as applied, so a redelivered command moves no money twice. */
+    private int rememberedTransfers = 100_000;
+
+    /** Every how many flushes all resident balances are re-read from Postgres, to pick up deposits. */
+    private int rebaseEvery = 25;
+
+    /** How long a transfer waits for its partitions. */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public Path getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(Path journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    public int getRememberedTransfers() {
+        return rememberedTransfers;
+    }
+
+    public void setRememberedTransfers(int rememberedTransfers) {
+        this.rememberedTransfers = rememberedTransfers;
+    }
+
+    public int getRebaseEvery() {
+        return rebaseEvery;
+    }
+
+    public void setRebaseEvery(int rebaseEvery) {
+        this.rebaseEvery = rebaseEvery;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
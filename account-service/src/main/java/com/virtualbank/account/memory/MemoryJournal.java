@@ -0,0 +1,205 @@
+package com.virtualbank.account.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * One partition's write-ahead journal: append-only segment files, each mapped
+ * into memory whole, so an append is a copy into the page cache and survives the
+ * process dying. {@link #sync()} forces the segment to disk; the partition calls
+ * it once per batch of commands, before any of them is acknowledged.
+ *
+ * <p>A record is {@code length | seq | kind | transferId | accountId | cents | crc32}.
+ * The length is written last, so a record torn by a crash reads as length zero
+ * (the mapped file is zero-filled) or fails its checksum, and recovery stops in
+ * front of it. Segments are named after their first sequence number and deleted
+ * once every record in them is in the Postgres snapshot.
+ */
+final class MemoryJournal implements Closeable {
+
+    enum Kind {
+        DEBIT, CREDIT, REVERSAL
+    }
+
+    record Record(long seq, Kind kind, String transferId, String accountId, BigDecimal amount) {
+    }
+
+    private static final int HEADER = Integer.BYTES;
+    private static final int FIXED = Long.BYTES + Byte.BYTES + 2 * Short.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path dir;
+    private final String prefix;
+    private final int segmentBytes;
+    private final boolean fsync;
+    /** First sequence number of every segment file, oldest first. */
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long nextSeq = 1;
+    private boolean dirty;
+
+    MemoryJournal(Path dir, int partition, int segmentBytes, boolean fsync) {
+        this.dir = dir;
+        this.prefix = "partition-%03d-".formatted(partition);
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Reads every intact record, oldest first, and leaves the journal positioned
+     * to append after the last one. New records are numbered past
+     * {@code checkpoint} even if the files holding it are gone.
+     */
+    List<Record> recover(long checkpoint) {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                        .forEach(file -> segments.put(firstSeqOf(file), file));
+            }
+            List<Record> records = new ArrayList<>();
+            for (Path segment : segments.values()) {
+                open(segment);
+                readAll(records);
+            }
+            if (!records.isEmpty()) {
+                nextSeq = records.getLast().seq() + 1;
+            }
+            if (nextSeq <= checkpoint) {
+                nextSeq = checkpoint + 1;
+                buffer = null;
+            }
+            if (buffer == null) {
+                roll();
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover the journal in " + dir, e);
+        }
+    }
+
+    /** Appends a record and returns its sequence number. Durable once {@link #sync()} returns. */
+    long append(Kind kind, String transferId, String accountId, BigDecimal amount) {
+        byte[] transfer = transferId.getBytes(StandardCharsets.UTF_8);
+        byte[] account = accountId.getBytes(StandardCharsets.UTF_8);
+        int length = FIXED + transfer.length + account.length;
+        if (buffer.remaining() < HEADER + length + HEADER) {
+            roll();
+        }
+        long seq = nextSeq++;
+        int start = buffer.position();
+        buffer.position(start + HEADER);
+        buffer.putLong(seq);
+        buffer.put((byte) kind.ordinal());
+        buffer.putShort((short) transfer.length).put(transfer);
+        buffer.putShort((short) account.length).put(account);
+        buffer.putLong(amount.movePointRight(2).longValueExact());
+        buffer.putInt(checksum(start + HEADER, length - Integer.BYTES));
+        buffer.putInt(start, length);
+        dirty = true;
+        return seq;
+    }
+
+    void sync() {
+        if (dirty && fsync) {
+            buffer.force();
+        }
+        dirty = false;
+    }
+
+    /** Deletes the segments whose records are all at or below {@code seq}. The current segment is kept. */
+    void truncate(long seq) {
+        while (segments.size() > 1) {
+            Long first = segments.firstKey();
+            Long next = segments.higherKey(first);
+            if (next - 1 > seq) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segments.remove(first));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete a journal segment", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void readAll(List<Record> records) {
+        while (buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < FIXED || length > buffer.remaining() - HEADER
+                    || buffer.getInt(start + HEADER + length - Integer.BYTES)
+                            != checksum(start + HEADER, length - Integer.BYTES)) {
+                buffer.position(start);
+                return;
+            }
+            buffer.position(start + HEADER);
+            long seq = buffer.getLong();
+            Kind kind = Kind.values()[buffer.get()];
+            String transferId = readString();
+            String accountId = readString();
+            BigDecimal amount = BigDecimal.valueOf(buffer.getLong(), 2);
+            buffer.getInt();
+            records.add(new Record(seq, kind, transferId, accountId, amount));
+        }
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checksum(int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void roll() {
+        try {
+            sync();
+            Path segment = dir.resolve(prefix + "%020d.wal".formatted(nextSeq));
+            segments.put(nextSeq, segment);
+            open(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a journal segment in " + dir, e);
+        }
+    }
+
+    private void open(Path segment) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, channel.size()));
+    }
+
+    private long firstSeqOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - ".wal".length()));
+    }
+}
@@ -0,0 +1,349 @@
+package com.virtualbank.account.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The accounts of one partition, in memory, owned by one thread. Every read and
+ * change of these balances runs as a task on that thread, so nothing is locked:
+ * commands for the same account are simply applied one after another.
+ *
+ * <p>The thread takes whatever tasks are queued as a batch, runs them, writes
+ * their journal records, syncs the journal once and only then completes their
+ * futures, so a caller is never told about a change that is not durable.
+ *
+ * <p>An account is loaded from Postgres the first time a task touches it. Its
+ * balance here can lag deposits made in Postgres until the next flush rebases
+ * it, which only ever makes it look smaller than it is. Money is moved at most
+ * once per transfer and kind: the keys of the records applied recently, the
+ * journal's included after a restart, are remembered, and a transfer whose debit
+ * was reversed answers every redelivery with its original failure.
+ */
+final class MemoryPartition implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryPartition.class);
+
+    private static final int MAX_BATCH = 512;
+
+    /** The failure reported for a transfer whose debit was given back. */
+    static final String REVERSED = "DESTINATION_NOT_ACTIVE";
+
+    /** An account as this partition sees it. */
+    static final class AccountState {
+        final String ownerId;
+        String status;
+        BigDecimal balance;
+
+        AccountState(String ownerId, String status, BigDecimal balance) {
+            this.ownerId = ownerId;
+            this.status = status;
+            this.balance = balance;
+        }
+
+        boolean isActive() {
+            return "ACTIVE".equals(status);
+        }
+    }
+
+    /** Changes handed to the flusher: every record up to {@code seq}, netted per account as well. */
+    record Drain(int partition, long seq, List<MemoryJournal.Record> records, Map<String, BigDecimal> deltas) {
+
+        boolean isEmpty() {
+            return records.isEmpty();
+        }
+    }
+
+    private final int id;
+    private final MemoryJournal journal;
+    private final Function<String, AccountState> loader;
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Map<String, AccountState> accounts = new HashMap<>();
+    private final Map<String, Boolean> applied;
+    private final Thread thread;
+
+    private List<MemoryJournal.Record> unflushed = new ArrayList<>();
+    private long lastSeq;
+    private volatile boolean running;
+
+    MemoryPartition(int id, MemoryJournal journal, Function<String, AccountState> loader, int rememberedTransfers) {
+        this.id = id;
+        this.journal = journal;
+        this.loader = loader;
+        this.applied = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > rememberedTransfers;
+            }
+        };
+        this.thread = Thread.ofPlatform().name("memory-partition-" + id).daemon().unstarted(this);
+    }
+
+    /**
+     * Reads the journal back. Records after {@code checkpoint} are not in Postgres
+     * yet and stay unflushed, for the first flush to write.
+     */
+    void recover(long checkpoint) {
+        for (MemoryJournal.Record record : journal.recover(checkpoint)) {
+            applied.put(key(record.kind(), record.transferId()), Boolean.TRUE);
+            if (record.seq() > checkpoint) {
+                unflushed.add(record);
+            }
+            lastSeq = record.seq();
+        }
+        if (!unflushed.isEmpty()) {
+            log.info("Partition {} recovered {} journal records not yet in Postgres", id, unflushed.size());
+        }
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /** Stops taking tasks, lets the thread finish the ones queued, and closes the journal. */
+    void stop() throws InterruptedException {
+        running = false;
+        queue.add(new Task<>(() -> null));
+        thread.join();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Could not close the journal of partition {}", id, e);
+        }
+    }
+
+    /** Why the account cannot receive a credit, or null when it can. */
+    CompletableFuture<String> checkDestination(String accountId) {
+        return submit(() -> {
+            AccountState account = account(accountId);
+            if (account == null) {
+                return "DESTINATION_NOT_FOUND";
+            }
+            return account.isActive() ? null : "DESTINATION_NOT_ACTIVE";
+        });
+    }
+
+    /**
+     * Debits the source if the transfer passes every check, in the order the other
+     * engines report them; {@code destinationReason} is what the destination's
+     * partition found. Returns the failure reason, or null when the money moved.
+     */
+    CompletableFuture<String> debit(String transferId, String accountId, String initiatorId, BigDecimal amount,
+                                    String destinationReason) {
+        return submit(() -> {
+            // A transfer given back already failed; its redelivery must fail the same
+            // way, not go on to a credit that may succeed this time.
+            if (applied.containsKey(key(MemoryJournal.Kind.REVERSAL, transferId))) {
+                return REVERSED;
+            }
+            if (applied.containsKey(key(MemoryJournal.Kind.DEBIT, transferId))) {
+                return null;
+            }
+            AccountState account = account(accountId);
+            if (account == null) {
+                return "SOURCE_NOT_FOUND";
+            }
+            if (!account.isActive()) {
+                return "SOURCE_NOT_ACTIVE";
+            }
+            if (!account.ownerId.equals(initiatorId)) {
+                return "SOURCE_NOT_OWNED";
+            }
+            if (destinationReason != null) {
+                return destinationReason;
+            }
+            if (account.balance.compareTo(amount) < 0) {
+                return "INSUFFICIENT_FUNDS";
+            }
+            account.balance = account.balance.subtract(amount);
+            record(MemoryJournal.Kind.DEBIT, transferId, accountId, amount.negate());
+            return null;
+        });
+    }
+
+    /** Credits the destination if it is still active. */
+    CompletableFuture<Boolean> credit(String transferId, String accountId, BigDecimal amount) {
+        return submit(() -> {
+            if (applied.containsKey(key(MemoryJournal.Kind.CREDIT, transferId))) {
+                return true;
+            }
+            AccountState account = account(accountId);
+            if (account == null || !account.isActive()) {
+                return false;
+            }
+            account.balance = account.balance.add(amount);
+            record(MemoryJournal.Kind.CREDIT, transferId, accountId, amount);
+            return true;
+        });
+    }
+
+    /** Gives a debited amount back after the credit could not be made. */
+    CompletableFuture<Boolean> reverse(String transferId, String accountId, BigDecimal amount) {
+        return submit(() -> {
+            if (applied.containsKey(key(MemoryJournal.Kind.REVERSAL, transferId))) {
+                return true;
+            }
+            AccountState account = account(accountId);
+            account.balance = account.balance.add(amount);
+            record(MemoryJournal.Kind.REVERSAL, transferId, accountId, amount);
+            return true;
+        });
+    }
+
+    /** Hands the unflushed records to the flusher and starts a new set. */
+    CompletableFuture<Drain> drain() {
+        return submit(() -> {
+            List<MemoryJournal.Record> records = unflushed;
+            unflushed = new ArrayList<>();
+            return new Drain(id, lastSeq, records, net(records));
+        });
+    }
+
+    /** Puts back the records of a flush that failed, ahead of anything applied since. */
+    CompletableFuture<Void> restore(Drain drain) {
+        return submit(() -> {
+            List<MemoryJournal.Record> records = new ArrayList<>(drain.records());
+            records.addAll(unflushed);
+            unflushed = records;
+            return null;
+        });
+    }
+
+    /** The accounts this partition holds in memory. */
+    CompletableFuture<List<String>> residentAccounts() {
+        return submit(() -> List.copyOf(accounts.keySet()));
+    }
+
+    /**
+     * Takes the balances Postgres reported right after a flush of everything up
+     * to {@code drain.seq()} as the new base, plus what was applied here since,
+     * and drops the journal segments that flush made redundant.
+     */
+    CompletableFuture<Void> rebase(Drain drain, Map<String, AccountState> persisted) {
+        return submit(() -> {
+            Map<String, BigDecimal> since = net(unflushed);
+            persisted.forEach((accountId, state) -> {
+                AccountState account = accounts.get(accountId);
+                if (account != null) {
+                    account.status = state.status;
+                    account.balance = state.balance.add(since.getOrDefault(accountId, BigDecimal.ZERO));
+                }
+            });
+            journal.truncate(drain.seq());
+            return null;
+        });
+    }
+
+    @Override
+    public void run() {
+        List<Task<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            for (Task<?> task : batch) {
+                task.run();
+            }
+            try {
+                journal.sync();
+                batch.forEach(Task::complete);
+            } catch (RuntimeException e) {
+                log.error("Could not sync the journal of partition {}", id, e);
+                batch.forEach(task -> task.fail(e));
+            }
+            batch.clear();
+        }
+        Task<?> left;
+        while ((left = queue.poll()) != null) {
+            left.fail(new IllegalStateException("Memory partition " + id + " is stopped"));
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        Task<T> task = new Task<>(work);
+        if (!running) {
+            task.fail(new IllegalStateException("Memory partition " + id + " is not running"));
+        } else {
+            queue.add(task);
+        }
+        return task.result;
+    }
+
+    private AccountState account(String accountId) {
+        AccountState account = accounts.get(accountId);
+        if (account == null) {
+            account = loader.apply(accountId);
+            if (account != null) {
+                accounts.put(accountId, account);
+            }
+        }
+        return account;
+    }
+
+    private void record(MemoryJournal.Kind kind, String transferId, String accountId, BigDecimal amount) {
+        long seq = journal.append(kind, transferId, accountId, amount);
+        unflushed.add(new MemoryJournal.Record(seq, kind, transferId, accountId, amount));
+        applied.put(key(kind, transferId), Boolean.TRUE);
+        lastSeq = seq;
+    }
+
+    private static Map<String, BigDecimal> net(List<MemoryJournal.Record> records) {
+        Map<String, BigDecimal> deltas = new HashMap<>();
+        for (MemoryJournal.Record record : records) {
+            deltas.merge(record.accountId(), record.amount(), BigDecimal::add);
+        }
+        return deltas;
+    }
+
+    private static String key(MemoryJournal.Kind kind, String transferId) {
+        return kind.name() + ':' + transferId;
+    }
+
+    private static final class Task<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException error;
+
+        Task(Supplier<T> work) {
+            this.work = work;
+        }
+
+        void run() {
+            try {
+                value = work.get();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+
+        void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
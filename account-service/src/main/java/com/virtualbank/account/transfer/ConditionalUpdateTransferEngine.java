@@ -0,0 +1,125 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.Ledger;
+import com.virtualbank.common.event.TransferEvent;
+import com.virtualbank.common.event.TransferRequested;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Moves money with two guarded UPDATE statements instead of locking reads. The
+ * debit only matches when the source is active, owned by the initiator and can
+ * cover the amount; the credit only matches an active destination. A row is
+ * locked by the statement that changes it and nothing is read while the locks
+ * are held, so a hot account stays locked for the second update, the outbox
+ * insert and the commit, instead of two locking reads, two checks and a flush as
+ * with {@link LockingTransferEngine}.
+ *
+ * <p>The two statements run in account-id order, the same global order the
+ * locking engine uses, so opposite transfers cannot deadlock. When one matches
+ * no row the other is undone if it already ran, and only then are the accounts
+ * read to name the reason, through the same {@link TransferRules} as the locking
+ * engine. The {@code CHECK (balance >= 0)} constraint remains the backstop.
+ * Selected by {@code vbank.transfer.engine=conditional}.
+ *
+ * <p>In compacted ledger mode the credit is a pending journal entry that locks
+ * no row, so the debit is the only row change and always goes first. A debit the
+ * row cannot cover folds the source's pending credits and tries once more.
+ *
+ * <p>Neither statement matches a hot account's row. When the accounts read to
+ * name the reason show one is hot, one this instance has not seen promoted yet,
+ * the transfer goes to {@link HotAccountTransfers} instead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vbank.transfer", name = "engine", havingValue = "conditional")
+public class ConditionalUpdateTransferEngine implements TransferEngine {
+
+    private final AccountRepository accounts;
+    private final Ledger ledger;
+    private final HotAccountTransfers hotAccountTransfers;
+
+    public ConditionalUpdateTransferEngine(AccountRepository accounts, Ledger ledger,
+                                           HotAccountTransfers hotAccountTransfers) {
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.hotAccountTransfers = hotAccountTransfers;
+    }
+
+    @Override
+    public TransferEvent transfer(TransferRequested command, Instant now) {
+        if (ledger.defersCredits()) {
+            return transferDeferred(command, now);
+        }
+        String fromId = command.fromAccountId();
+        String toId = command.toAccountId();
+        BigDecimal amount = command.amount();
+        if (fromId.compareTo(toId) <= 0) {
+            if (debit(command, now) == 0) {
+                return failed(command, now);
+            }
+            if (accounts.creditIfActive(toId, amount, now) == 0) {
+                accounts.adjustBalance(fromId, amount, now);
+                return failed(command, now);
+            }
+        } else {
+            if (accounts.creditIfActive(toId, amount, now) == 0) {
+                return failed(command, now);
+            }
+            if (debit(command, now) == 0) {
+                accounts.adjustBalance(toId, amount.negate(), now);
+                return failed(command, now);
+            }
+        }
+        ledger.append(Entry.debit(fromId, command.transferId(), amount),
+                Entry.credit(toId, command.transferId(), amount));
+        return new TransferEvent.TransferCompleted(command.transferId(), now);
+    }
+
+    private TransferEvent transferDeferred(TransferRequested command, Instant now) {
+        String fromId = command.fromAccountId();
+        BigDecimal amount = command.amount();
+        if (debit(command, now) == 0) {
+            return failed(command, now);
+        }
+        if (!ledger.appendPending(Entry.credit(command.toAccountId(), command.transferId(), amount), now)) {
+            accounts.adjustBalance(fromId, amount, now);
+            return failed(command, now);
+        }
+        ledger.append(Entry.debit(fromId, command.transferId(), amount));
+        return new TransferEvent.TransferCompleted(command.transferId(), now);
+    }
+
+    private int debit(TransferRequested command, Instant now) {
+        int debited = accounts.debitIfAllowed(command.fromAccountId(), command.initiatorId(), command.amount(), now);
+        if (debited == 0 && ledger.foldPending(List.of(command.fromAccountId()))) {
+            debited = accounts.debitIfAllowed(command.fromAccountId(), command.initiatorId(), command.amount(), now);
+        }
+        return debited;
+    }
+
+    /**
+     * Names why a guarded statement matched nothing, or hands the transfer to
+     * {@link HotAccountTransfers} when it touches a hot account. Status, owner and
+     * existence cannot change under the transfer, so when the rules find nothing
+     * wrong with them the balance was short, even if the persistence context
+     * holds an older copy of it.
+     */
+    private TransferEvent failed(TransferRequested command, Instant now) {
+        Account from = accounts.findById(command.fromAccountId()).orElse(null);
+        Account to = accounts.findById(command.toAccountId()).orElse(null);
+        if ((from != null && from.isHot()) || (to != null && to.isHot())) {
+            return hotAccountTransfers.transfer(command, now);
+        }
+        String reason = TransferRules.validate(command, from, to);
+        return new TransferEvent.TransferFailed(command.transferId(),
+                Objects.requireNonNullElse(reason, "INSUFFICIENT_FUNDS"), now);
+    }
+}
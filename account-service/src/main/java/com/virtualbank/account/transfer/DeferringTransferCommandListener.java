@@ -0,0 +1,60 @@
+package com.virtualbank.account.transfer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.messaging.Topics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Takes the place of {@link TransferCommandListener} with
+ * {@code vbank.transfer.contention.mode=defer}: commands go through
+ * {@link TransferDeferrals}, so one whose account is locked is parked and the
+ * consumer moves on to the next record. A record is acknowledged only once its
+ * command is applied. The container commits no offset past an unacknowledged one,
+ * and fetches the next poll only when the last one is fully acknowledged, so a
+ * crash redelivers the parked commands (TransferService skips any that were
+ * applied) and the consumer never runs far ahead of them. A parked command the
+ * redrive gives up on is published to the dead-letter topic, as the container's
+ * error handler does with a record that fails on the consumer thread, and then
+ * acknowledged.
+ */
+@Component
+@ConditionalOnExpression("!${vbank.transfer.batch.enabled:false} and '${vbank.transfer.contention.mode:block}' == 'defer'")
+public class DeferringTransferCommandListener implements ConsumerSeekAware {
+
+    private final TransferDeferrals deferrals;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<DeadLetterPublishingRecoverer> deadLetters;
+
+    public DeferringTransferCommandListener(TransferDeferrals deferrals, ObjectMapper objectMapper,
+                                            ObjectProvider<DeadLetterPublishingRecoverer> deadLetters) {
+        this.deferrals = deferrals;
+        this.objectMapper = objectMapper;
+        this.deadLetters = deadLetters;
+    }
+
+    @KafkaListener(topics = Topics.TRANSFER_COMMANDS, groupId = "account-service",
+            containerFactory = "deferringTransferListenerContainerFactory")
+    public void onCommand(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) throws Exception {
+        TransferRequested command = objectMapper.readValue(record.value(), TransferRequested.class);
+        deferrals.submit(command, acknowledgment::acknowledge, failure -> {
+            deadLetters.getObject().accept(record, failure);
+            acknowledgment.acknowledge();
+        });
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        deferrals.clear();
+    }
+}
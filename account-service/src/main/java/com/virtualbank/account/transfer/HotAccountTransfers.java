@@ -0,0 +1,141 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.domain.AccountStatus;
+import com.virtualbank.account.hot.HotAccounts;
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.Ledger;
+import com.virtualbank.common.event.TransferEvent;
+import com.virtualbank.common.event.TransferRequested;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The transfer path for commands that touch a hot account, used by
+ * {@link TransferService} in place of the configured engine. Neither account row
+ * is locked: the hot side moves money in its buckets through {@link HotAccounts},
+ * and an ordinary side uses the guarded updates of
+ * {@link ConditionalUpdateTransferEngine}. The two moves run in account-id order,
+ * as in the engines, and the first is undone if the second cannot be made. In
+ * compacted ledger mode a credit to an ordinary account is a pending journal
+ * entry that locks nothing, so the debit goes first.
+ *
+ * <p>The accounts are read without a lock, so both moves check the status
+ * again, the bucket updates as the guarded row updates do: an account frozen
+ * since it was read fails the transfer with the reason the engines give.
+ */
+@Component
+public class HotAccountTransfers {
+
+    private final AccountRepository accounts;
+    private final HotAccounts hotAccounts;
+    private final Ledger ledger;
+
+    public HotAccountTransfers(AccountRepository accounts, HotAccounts hotAccounts, Ledger ledger) {
+        this.accounts = accounts;
+        this.hotAccounts = hotAccounts;
+        this.ledger = ledger;
+    }
+
+    public boolean involves(TransferRequested command) {
+        return hotAccounts.isHot(command.fromAccountId()) || hotAccounts.isHot(command.toAccountId());
+    }
+
+    public TransferEvent transfer(TransferRequested command, Instant now) {
+        Account from = accounts.findById(command.fromAccountId()).orElse(null);
+        Account to = accounts.findById(command.toAccountId()).orElse(null);
+        String reason = TransferRules.validateParties(command, from, to);
+        if (reason != null) {
+            return new TransferEvent.TransferFailed(command.transferId(), reason, now);
+        }
+
+        BigDecimal amount = command.amount();
+        boolean deferred = defers(to);
+        if (deferred || from.getId().compareTo(to.getId()) <= 0) {
+            if (!debit(from, command, now)) {
+                return failed(command, debitFailure(from), now);
+            }
+            if (!credit(to, command, now)) {
+                giveBack(from, amount, now);
+                return failed(command, "DESTINATION_NOT_ACTIVE", now);
+            }
+        } else {
+            if (!credit(to, command, now)) {
+                return failed(command, "DESTINATION_NOT_ACTIVE", now);
+            }
+            if (!debit(from, command, now)) {
+                takeBack(to, amount, now);
+                return failed(command, debitFailure(from), now);
+            }
+        }
+        Entry debitEntry = Entry.debit(from.getId(), command.transferId(), amount);
+        if (deferred) {
+            ledger.append(debitEntry);
+        } else {
+            ledger.append(debitEntry, Entry.credit(to.getId(), command.transferId(), amount));
+        }
+        return new TransferEvent.TransferCompleted(command.transferId(), now);
+    }
+
+    /** Whether a credit to the account is only appended to the journal. */
+    private boolean defers(Account account) {
+        return !account.isHot() && ledger.defersCredits();
+    }
+
+    private boolean debit(Account account, TransferRequested command, Instant now) {
+        if (account.isHot()) {
+            return hotAccounts.debit(account.getId(), command.amount());
+        }
+        if (accounts.debitIfAllowed(account.getId(), command.initiatorId(), command.amount(), now) == 1) {
+            return true;
+        }
+        return ledger.foldPending(List.of(account.getId()))
+                && accounts.debitIfAllowed(account.getId(), command.initiatorId(), command.amount(), now) == 1;
+    }
+
+    private boolean credit(Account account, TransferRequested command, Instant now) {
+        if (account.isHot()) {
+            return hotAccounts.credit(account.getId(), account.getBucketCount(), command.amount());
+        }
+        if (defers(account)) {
+            return ledger.appendPending(Entry.credit(account.getId(), command.transferId(), command.amount()), now);
+        }
+        return accounts.creditIfActive(account.getId(), command.amount(), now) == 1;
+    }
+
+    /** Undoes a debit made earlier in this transaction. */
+    private void giveBack(Account account, BigDecimal amount, Instant now) {
+        if (account.isHot()) {
+            hotAccounts.adjust(account.getId(), account.getBucketCount(), amount);
+        } else {
+            accounts.adjustBalance(account.getId(), amount, now);
+        }
+    }
+
+    /** Undoes a credit made earlier in this transaction; the money is still there and still locked by it. */
+    private void takeBack(Account account, BigDecimal amount, Instant now) {
+        if (account.isHot()) {
+            hotAccounts.adjust(account.getId(), account.getBucketCount(), amount.negate());
+        } else {
+            accounts.adjustBalance(account.getId(), amount.negate(), now);
+        }
+    }
+
+    /**
+     * Why a debit matched nothing. The source was active when it was read, so
+     * unless it has been frozen since, its money was short.
+     */
+    private String debitFailure(Account from) {
+        return accounts.findStatusById(from.getId()).filter(AccountStatus.ACTIVE::equals).isPresent()
+                ? "INSUFFICIENT_FUNDS"
+                : "SOURCE_NOT_ACTIVE";
+    }
+
+    private static TransferEvent failed(TransferRequested command, String reason, Instant now) {
+        return new TransferEvent.TransferFailed(command.transferId(), reason, now);
+    }
+}
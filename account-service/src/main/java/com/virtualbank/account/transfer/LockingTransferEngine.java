@@ -0,0 +1,150 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.ledger.Entry;
+import com.virtualbank.account.ledger.Ledger;
+import com.virtualbank.common.event.TransferEvent;
+import com.virtualbank.common.event.TransferRequested;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads both accounts under a pessimistic write lock, checks them in Java, and
+ * lets Hibernate flush the new balances at commit. Concurrent transfers touching
+ * an account serialize on its row lock, so they cannot double-spend.
+ *
+ * <p>It holds the destination lock anyway, so it credits in place in either
+ * ledger mode. In compacted mode, deposits still leave pending credits, which are
+ * folded into the rows before they are loaded so the funds check sees them. In
+ * in-place mode nothing is deferred and nothing is folded; credits left pending
+ * by an earlier switch are drained by the
+ * {@link com.virtualbank.account.ledger.LedgerCompactor}.
+ *
+ * <p>A transfer the locked rows show touches a hot account, one this instance
+ * has not seen promoted yet, goes to {@link HotAccountTransfers} instead, so its
+ * money moves in the buckets and never lands in the row. In a batch such
+ * transfers run after the rest, once the in-memory changes are flushed.
+ *
+ * <p>Loading under lock is timed as {@code vbank.transfer.lock.acquire}, waits
+ * for a row another transaction holds included.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vbank.transfer", name = "engine", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine {
+
+    private final AccountRepository accounts;
+    private final Ledger ledger;
+    private final HotAccountTransfers hotAccountTransfers;
+    private final Timer lockAcquire;
+
+    public LockingTransferEngine(AccountRepository accounts, Ledger ledger, HotAccountTransfers hotAccountTransfers,
+                                 MeterRegistry meterRegistry) {
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.hotAccountTransfers = hotAccountTransfers;
+        this.lockAcquire = Timer.builder("vbank.transfer.lock.acquire")
+                .description("Time to load and lock the accounts of a transfer, lock waits included")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public TransferEvent transfer(TransferRequested command, Instant now) {
+        // Lock both accounts in a fixed order (smaller id first). Two opposite-direction
+        // transfers between the same pair would otherwise grab the locks in opposite
+        // orders and deadlock; the canonical order guarantees they cannot.
+        String fromId = command.fromAccountId();
+        String toId = command.toAccountId();
+        if (ledger.defersCredits()) {
+            ledger.foldPending(List.of(fromId, toId));
+        }
+        Account from;
+        Account to;
+        if (fromId.compareTo(toId) <= 0) {
+            from = lock(fromId);
+            to = lock(toId);
+        } else {
+            to = lock(toId);
+            from = lock(fromId);
+        }
+        if (isHot(from) || isHot(to)) {
+            return hotAccountTransfers.transfer(command, now);
+        }
+        List<Entry> entries = new ArrayList<>(2);
+        TransferEvent outcome = apply(command, from, to, now, entries);
+        ledger.append(entries);
+        return outcome;
+    }
+
+    /** Locks every account of the batch up front in one statement, then applies the commands in memory. */
+    @Override
+    public List<TransferEvent> transferAll(List<TransferRequested> commands, Instant now) {
+        Set<String> accountIds = new TreeSet<>();
+        for (TransferRequested command : commands) {
+            accountIds.add(command.fromAccountId());
+            accountIds.add(command.toAccountId());
+        }
+        if (ledger.defersCredits()) {
+            ledger.foldPending(accountIds);
+        }
+        Map<String, Account> locked = new HashMap<>();
+        for (Account account : lockAcquire.record(() -> accounts.findAllByIdForUpdate(accountIds))) {
+            locked.put(account.getId(), account);
+        }
+        Map<String, TransferEvent> outcomes = new HashMap<>();
+        List<TransferRequested> hot = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>(commands.size() * 2);
+        for (TransferRequested command : commands) {
+            Account from = locked.get(command.fromAccountId());
+            Account to = locked.get(command.toAccountId());
+            if (isHot(from) || isHot(to)) {
+                hot.add(command);
+            } else {
+                outcomes.put(command.transferId(), apply(command, from, to, now, entries));
+            }
+        }
+        ledger.append(entries);
+        if (!hot.isEmpty()) {
+            accounts.flush();
+            for (TransferRequested command : hot) {
+                outcomes.put(command.transferId(), hotAccountTransfers.transfer(command, now));
+            }
+        }
+        List<TransferEvent> ordered = new ArrayList<>(commands.size());
+        for (TransferRequested command : commands) {
+            ordered.add(outcomes.get(command.transferId()));
+        }
+        return ordered;
+    }
+
+    private Account lock(String id) {
+        return lockAcquire.record(() -> accounts.findByIdForUpdate(id)).orElse(null);
+    }
+
+    private static boolean isHot(Account account) {
+        return account != null && account.isHot();
+    }
+
+    private TransferEvent apply(TransferRequested command, Account from, Account to, Instant now,
+                                List<Entry> entries) {
+        String reason = TransferRules.validate(command, from, to);
+        if (reason != null) {
+            return new TransferEvent.TransferFailed(command.transferId(), reason, now);
+        }
+        from.debit(command.amount(), now);
+        to.credit(command.amount(), now);
+        entries.add(Entry.debit(from.getId(), command.transferId(), command.amount()));
+        entries.add(Entry.credit(to.getId(), command.transferId(), command.amount()));
+        return new TransferEvent.TransferCompleted(command.transferId(), now);
+    }
+}
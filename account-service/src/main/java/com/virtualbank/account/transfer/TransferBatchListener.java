@@ -0,0 +1,77 @@
+package com.virtualbank.account.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.messaging.Topics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch alternative to {@link TransferCommandListener}, active with
+ * {@code vbank.transfer.batch.enabled=true}. Each poll of transfer commands is
+ * applied in one transaction through {@link TransferService#applyBatch(List)}.
+ *
+ * <p>A bad record does not sink its batch. The commands before it are applied,
+ * and the listener throws a {@link BatchListenerFailedException} carrying its index;
+ * the container's error handler commits the offsets before it, retries it and
+ * routes it to transfer.commands.DLT if it keeps failing, then carries on with
+ * the rest. When the shared transaction fails for a reason no single record
+ * explains up front, the batch is replayed one command at a time to find the
+ * culprit.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vbank.transfer.batch", name = "enabled", havingValue = "true")
+public class TransferBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferBatchListener.class);
+
+    private final TransferService transferService;
+    private final ObjectMapper objectMapper;
+
+    public TransferBatchListener(TransferService transferService, ObjectMapper objectMapper) {
+        this.transferService = transferService;
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(topics = Topics.TRANSFER_COMMANDS, groupId = "account-service",
+            containerFactory = "transferBatchListenerContainerFactory",
+            properties = "max.poll.records=${vbank.transfer.batch.max-records:500}")
+    public void onCommands(List<String> payloads) {
+        List<TransferRequested> commands = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                commands.add(objectMapper.readValue(payloads.get(i), TransferRequested.class));
+            } catch (JsonProcessingException e) {
+                applyAll(commands);
+                throw new BatchListenerFailedException("Unreadable transfer command", e, i);
+            }
+        }
+        applyAll(commands);
+    }
+
+    private void applyAll(List<TransferRequested> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        try {
+            transferService.applyBatch(commands);
+        } catch (RuntimeException batchFailure) {
+            log.warn("Transfer batch of {} failed, applying its commands one by one", commands.size(), batchFailure);
+            for (int i = 0; i < commands.size(); i++) {
+                try {
+                    transferService.apply(commands.get(i));
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("Transfer command failed", e, i);
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.virtualbank.account.transfer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.virtualbank.common.event.TransferRequested;
 import com.virtualbank.common.messaging.Topics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -11,9 +12,13 @@ import org.springframework.stereotype.Component;
  * {@link TransferRequested}; this parses it and hands it to {@link TransferService}.
  * A message that cannot be parsed or that the handler keeps failing on is retried
  * a few times and then routed to transfer.commands.DLT by the container's error
- * handler, so one poison record never blocks the partition.
+ * handler, so one poison record never blocks the partition. Replaced by
+ * {@link TransferBatchListener} when {@code vbank.transfer.batch.enabled=true}, and
+ * by {@link DeferringTransferCommandListener} when
+ * {@code vbank.transfer.contention.mode=defer}.
  */
 @Component
+@ConditionalOnExpression("!${vbank.transfer.batch.enabled:false} and '${vbank.transfer.contention.mode:block}' != 'defer'")
 public class TransferCommandListener {
 
     private final TransferService transferService;
@@ -0,0 +1,250 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.common.event.TransferRequested;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Applies transfer commands without letting one busy account hold up the
+ * consumer, active with {@code vbank.transfer.contention.mode=defer}. Each
+ * attempt runs with a Postgres {@code lock_timeout} of a millisecond or so, so a
+ * row lock held by another transaction fails it at once instead of blocking,
+ * whichever engine takes the lock. The command is then parked here and retried
+ * every {@code vbank.transfer.contention.redrive-ms} until the lock is free.
+ *
+ * <p>Order per account holds. A command touching an account that has a command
+ * parked waits behind it without being tried, and a redrive retries the parked
+ * commands in arrival order, passing over any that shares an account with an
+ * earlier one still parked. Commands on other accounts go straight through.
+ *
+ * <p>A parked command that fails for any other reason is retried with a backoff
+ * doubling from {@code vbank.transfer.contention.failure-backoff-ms}, still
+ * holding its accounts. After {@code vbank.transfer.contention.max-redrive-failures}
+ * such failures it is given up on and handed to the caller's {@code abandoned}
+ * callback, which dead-letters it, so one bad command cannot hold its accounts
+ * forever.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vbank.transfer.contention", name = "mode", havingValue = "defer")
+public class TransferDeferrals {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferDeferrals.class);
+
+    /** A parked command; its failure count and retry time are only touched by the redrive. */
+    private static final class Parked {
+        final TransferRequested command;
+        final Runnable applied;
+        final Consumer<RuntimeException> abandoned;
+        final long parkedAt;
+        int failures;
+        long retryAt;
+
+        Parked(TransferRequested command, Runnable applied, Consumer<RuntimeException> abandoned, long parkedAt) {
+            this.command = command;
+            this.applied = applied;
+            this.abandoned = abandoned;
+            this.parkedAt = parkedAt;
+            this.retryAt = parkedAt;
+        }
+    }
+
+    private final TransferService transferService;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final long lockTimeoutMs;
+    private final int maxRedriveFailures;
+    private final long failureBackoffMs;
+    private final Counter contended;
+    private final Counter deferred;
+    private final Counter abandonedCount;
+    private final Timer delay;
+
+    /** Parked commands in arrival order. Guarded by this. */
+    private final List<Parked> parked = new ArrayList<>();
+    /** How many parked commands touch each account. Guarded by this. */
+    private final Map<String, Integer> waiting = new HashMap<>();
+
+    public TransferDeferrals(TransferService transferService, JdbcTemplate jdbc,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${vbank.transfer.contention.lock-timeout-ms:1}") long lockTimeoutMs,
+                             @Value("${vbank.transfer.contention.max-redrive-failures:5}") int maxRedriveFailures,
+                             @Value("${vbank.transfer.contention.failure-backoff-ms:100}") long failureBackoffMs) {
+        this.transferService = transferService;
+        this.jdbc = jdbc;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.maxRedriveFailures = maxRedriveFailures;
+        this.failureBackoffMs = failureBackoffMs;
+        this.contended = Counter.builder("vbank.transfer.lock.contended")
+                .description("Transfer attempts that found an account row locked")
+                .register(meterRegistry);
+        this.deferred = Counter.builder("vbank.transfer.deferred")
+                .description("Transfer commands parked behind a locked account")
+                .register(meterRegistry);
+        this.abandonedCount = Counter.builder("vbank.transfer.deferred.abandoned")
+                .description("Parked transfer commands given up on after repeated failures")
+                .register(meterRegistry);
+        this.delay = Timer.builder("vbank.transfer.deferral.delay")
+                .description("Time from parking a transfer command to applying it")
+                .register(meterRegistry);
+        Gauge.builder("vbank.transfer.deferred.parked", this, TransferDeferrals::parkedCount)
+                .description("Transfer commands parked right now")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Applies the command now if nothing is parked on its accounts and their rows
+     * are free, or parks it. {@code applied} runs once the command is applied,
+     * right away or on a later redrive. Any failure other than a held lock is
+     * thrown here, for the listener's error handling; once the command is parked
+     * there is no listener to throw to, and {@code abandoned} gets the failure
+     * that made the redrive give up on it.
+     */
+    public void submit(TransferRequested command, Runnable applied, Consumer<RuntimeException> abandoned) {
+        if (!waitsBehindParked(command) && attempt(command)) {
+            applied.run();
+            return;
+        }
+        park(command, applied, abandoned);
+    }
+
+    /** Retries the parked commands whose accounts nothing earlier is parked on. */
+    @Scheduled(fixedDelayString = "${vbank.transfer.contention.redrive-ms:20}")
+    public void redrive() {
+        List<Parked> snapshot;
+        synchronized (this) {
+            if (parked.isEmpty()) {
+                return;
+            }
+            snapshot = List.copyOf(parked);
+        }
+        Set<String> blocked = new HashSet<>();
+        long now = System.nanoTime();
+        for (Parked next : snapshot) {
+            String from = next.command.fromAccountId();
+            String to = next.command.toAccountId();
+            if (blocked.contains(from) || blocked.contains(to) || now - next.retryAt < 0 || !retry(next)) {
+                blocked.add(from);
+                blocked.add(to);
+                continue;
+            }
+            if (unpark(next)) {
+                delay.record(System.nanoTime() - next.parkedAt, TimeUnit.NANOSECONDS);
+                next.applied.run();
+            }
+        }
+    }
+
+    /**
+     * Forgets every parked command, when the partition they came from is revoked.
+     * Their offsets were never acknowledged, so the partition's next owner gets them.
+     */
+    public synchronized void clear() {
+        if (!parked.isEmpty()) {
+            log.info("Dropping {} parked transfer commands; they will be redelivered", parked.size());
+        }
+        parked.clear();
+        waiting.clear();
+    }
+
+    private boolean attempt(TransferRequested command) {
+        try {
+            transactions.executeWithoutResult(status -> {
+                jdbc.execute("set local lock_timeout = " + lockTimeoutMs);
+                transferService.apply(command);
+            });
+            return true;
+        } catch (PessimisticLockingFailureException e) {
+            contended.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Tries a parked command once more. A failure other than a held lock backs it
+     * off, and the last one allowed abandons it; it stays parked, still holding
+     * its accounts, until the abandoned callback has taken it.
+     */
+    private boolean retry(Parked next) {
+        try {
+            return attempt(next.command);
+        } catch (RuntimeException e) {
+            next.failures++;
+            if (next.failures < maxRedriveFailures) {
+                backOff(next);
+                log.warn("Parked transfer {} failed ({} of {}); retrying after a backoff",
+                        next.command.transferId(), next.failures, maxRedriveFailures, e);
+                return false;
+            }
+            abandon(next, e);
+            return false;
+        }
+    }
+
+    private void abandon(Parked next, RuntimeException failure) {
+        try {
+            next.abandoned.accept(failure);
+        } catch (RuntimeException e) {
+            log.error("Could not hand off abandoned transfer {}; retrying after a backoff",
+                    next.command.transferId(), e);
+            backOff(next);
+            return;
+        }
+        if (unpark(next)) {
+            abandonedCount.increment();
+            log.error("Gave up on parked transfer {} after {} failures", next.command.transferId(), next.failures,
+                    failure);
+        }
+    }
+
+    private void backOff(Parked next) {
+        long backoffMs = failureBackoffMs << Math.min(next.failures - 1, 16);
+        next.retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+    }
+
+    private synchronized boolean waitsBehindParked(TransferRequested command) {
+        return waiting.containsKey(command.fromAccountId()) || waiting.containsKey(command.toAccountId());
+    }
+
+    private synchronized void park(TransferRequested command, Runnable applied,
+                                   Consumer<RuntimeException> abandoned) {
+        parked.add(new Parked(command, applied, abandoned, System.nanoTime()));
+        waiting.merge(command.fromAccountId(), 1, Integer::sum);
+        waiting.merge(command.toAccountId(), 1, Integer::sum);
+        deferred.increment();
+    }
+
+    private synchronized boolean unpark(Parked done) {
+        if (!parked.remove(done)) {
+            return false;
+        }
+        waiting.computeIfPresent(done.command.fromAccountId(), (id, count) -> count == 1 ? null : count - 1);
+        waiting.computeIfPresent(done.command.toAccountId(), (id, count) -> count == 1 ? null : count - 1);
+        return true;
+    }
+
+    private synchronized int parkedCount() {
+        return parked.size();
+    }
+}
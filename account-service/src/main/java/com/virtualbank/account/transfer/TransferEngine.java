@@ -0,0 +1,40 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.common.event.TransferEvent;
+import com.virtualbank.common.event.TransferRequested;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the money for a transfer command inside the caller's transaction and
+ * reports the outcome. {@link TransferService} owns idempotency and the outbox;
+ * an engine only decides how the two balances change safely under concurrency,
+ * and journals a completed transfer's debit and credit through the Ledger.
+ * Chosen with {@code vbank.transfer.engine}: {@code locking} (the default,
+ * {@link LockingTransferEngine}) or {@code conditional}
+ * ({@link ConditionalUpdateTransferEngine}) or {@code memory}
+ * ({@link com.virtualbank.account.memory.InMemoryTransferEngine}).
+ */
+public interface TransferEngine {
+
+    TransferEvent transfer(TransferRequested command, Instant now);
+
+    /**
+     * Whether the engine moves hot accounts' money itself. Otherwise
+     * {@link TransferService} routes commands touching one to {@link HotAccountTransfers}.
+     */
+    default boolean handlesHotAccounts() {
+        return false;
+    }
+
+    /** Applies the commands in order; each one sees the balances the earlier ones left. */
+    default List<TransferEvent> transferAll(List<TransferRequested> commands, Instant now) {
+        List<TransferEvent> outcomes = new ArrayList<>(commands.size());
+        for (TransferRequested command : commands) {
+            outcomes.add(transfer(command, now));
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,50 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.common.event.TransferRequested;
+
+/**
+ * The checks a transfer must pass, in the order their failure reasons are
+ * reported. Shared by the engines so both reject the same command with the same
+ * reason.
+ */
+final class TransferRules {
+
+    private TransferRules() {
+    }
+
+    /** Returns the failure reason, or null when the transfer may proceed. */
+    static String validate(TransferRequested command, Account from, Account to) {
+        String reason = validateParties(command, from, to);
+        if (reason != null) {
+            return reason;
+        }
+        if (!from.canCover(command.amount())) {
+            return "INSUFFICIENT_FUNDS";
+        }
+        return null;
+    }
+
+    /**
+     * Every check except funds: the accounts exist, are active, and the source
+     * belongs to the initiator. Hot-account transfers check funds in the buckets.
+     */
+    static String validateParties(TransferRequested command, Account from, Account to) {
+        if (from == null) {
+            return "SOURCE_NOT_FOUND";
+        }
+        if (!from.isActive()) {
+            return "SOURCE_NOT_ACTIVE";
+        }
+        if (!from.getOwnerId().equals(command.initiatorId())) {
+            return "SOURCE_NOT_OWNED";
+        }
+        if (to == null) {
+            return "DESTINATION_NOT_FOUND";
+        }
+        if (!to.isActive()) {
+            return "DESTINATION_NOT_ACTIVE";
+        }
+        return null;
+    }
+}
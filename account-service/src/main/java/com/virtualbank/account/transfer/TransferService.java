@@ -1,104 +1,160 @@
 package com.virtualbank.account.transfer;
 
-import com.virtualbank.account.domain.Account;
-import com.virtualbank.account.domain.AccountRepository;
-import com.virtualbank.account.domain.ProcessedEvent;
 import com.virtualbank.account.domain.ProcessedEventRepository;
 import com.virtualbank.common.event.TransferEvent;
 import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.idempotency.IdempotencyGuard;
 import com.virtualbank.common.messaging.Topics;
 import com.virtualbank.common.outbox.OutboxAppender;
+import com.virtualbank.common.outbox.OutboxMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Applies a single intra-bank transfer in one local transaction. Because both
  * accounts live in this database, the debit and credit commit atomically, so a
- * failed transfer leaves no money in flight and needs no compensating step.
+ * failed transfer leaves no money in flight and needs no compensating step. How
+ * the balances move under concurrency is up to the configured {@link TransferEngine};
+ * a transfer touching a hot account goes through {@link HotAccountTransfers} instead,
+ * unless the engine handles hot accounts itself.
  *
  * <p>The outcome (completed or failed) is appended to the transactional outbox in
  * the same transaction, so the orchestrator always learns what happened exactly
- * once the balance change is durable.
+ * once the balance change is durable. Whether a transferId was already processed
+ * is asked of the {@link IdempotencyGuard}, which reads processed_events only for
+ * the few ids it cannot rule out. The guard cannot see ids another instance has
+ * just processed, so the id goes into processed_events with an insert that skips
+ * one already there, and a command whose id it skips is treated as processed.
+ *
+ * <p>{@link #applyBatch(List)} does the same for a whole poll of commands in one
+ * transaction, for the batch listener.
  */
 @Service
 public class TransferService {
 
-    private final AccountRepository accounts;
+    private final TransferEngine engine;
+    private final HotAccountTransfers hotAccountTransfers;
     private final ProcessedEventRepository processedEvents;
+    private final IdempotencyGuard idempotency;
     private final OutboxAppender outbox;
+    private final JdbcTemplate jdbc;
     private final Clock clock;
 
-    public TransferService(AccountRepository accounts, ProcessedEventRepository processedEvents,
-                           OutboxAppender outbox, Clock clock) {
-        this.accounts = accounts;
+    public TransferService(TransferEngine engine, HotAccountTransfers hotAccountTransfers,
+                           ProcessedEventRepository processedEvents, IdempotencyGuard idempotency,
+                           OutboxAppender outbox, JdbcTemplate jdbc, Clock clock) {
+        this.engine = engine;
+        this.hotAccountTransfers = hotAccountTransfers;
         this.processedEvents = processedEvents;
+        this.idempotency = idempotency;
         this.outbox = outbox;
+        this.jdbc = jdbc;
         this.clock = clock;
     }
 
     @Transactional
     public void apply(TransferRequested command) {
         String transferId = command.transferId();
-        if (processedEvents.existsById(transferId)) {
+        if (idempotency.isProcessed(transferId)) {
             return;
         }
-        processedEvents.save(new ProcessedEvent(transferId, Instant.now(clock)));
-
-        // Lock both accounts in a fixed order (smaller id first). Two opposite-direction
-        // transfers between the same pair would otherwise grab the locks in opposite
-        // orders and deadlock; the canonical order guarantees they cannot.
-        String fromId = command.fromAccountId();
-        String toId = command.toAccountId();
-        Account from;
-        Account to;
-        if (fromId.compareTo(toId) <= 0) {
-            from = lock(fromId);
-            to = lock(toId);
-        } else {
-            to = lock(toId);
-            from = lock(fromId);
-        }
-
         Instant now = Instant.now(clock);
-        String reason = validate(command, from, to);
-        if (reason != null) {
-            outbox.append(transferId, Topics.TRANSFER_EVENTS, transferId,
-                    new TransferEvent.TransferFailed(transferId, reason, now));
+        if (!recordIfAbsent(transferId, now)) {
+            // Another instance processed it since the guard last heard.
             return;
         }
+        idempotency.recorded(transferId);
 
-        from.debit(command.amount(), now);
-        to.credit(command.amount(), now);
-        outbox.append(transferId, Topics.TRANSFER_EVENTS, transferId,
-                new TransferEvent.TransferCompleted(transferId, now));
-    }
-
-    private Account lock(String id) {
-        return accounts.findByIdForUpdate(id).orElse(null);
+        TransferEvent outcome = routesToHotPath(command)
+                ? hotAccountTransfers.transfer(command, now)
+                : engine.transfer(command, now);
+        outbox.append(transferId, Topics.TRANSFER_EVENTS, transferId, outcome);
     }
 
-    private String validate(TransferRequested command, Account from, Account to) {
-        if (from == null) {
-            return "SOURCE_NOT_FOUND";
+    /**
+     * Applies many commands in one transaction, in list order. Already-processed
+     * transferIds are found with at most one lookup, the engine applies the rest (the
+     * locking engine locks every account involved up front, in id order), and the
+     * outcomes go to the outbox as one batch. A transferId repeated within the
+     * list is applied once. Commands touching a hot account run after the rest,
+     * once the engine's changes are flushed, so their unlocked updates never sit
+     * underneath a loaded entity that is still to be written.
+     */
+    @Transactional
+    public void applyBatch(List<TransferRequested> commands) {
+        Map<String, TransferRequested> pending = new LinkedHashMap<>();
+        for (TransferRequested command : commands) {
+            pending.putIfAbsent(command.transferId(), command);
         }
-        if (!from.isActive()) {
-            return "SOURCE_NOT_ACTIVE";
+        pending.keySet().removeAll(idempotency.processed(pending.keySet()));
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Instant now = Instant.now(clock);
+        List<String> recorded = jdbc.queryForList("""
+                insert into processed_events (transfer_id, processed_at)
+                select transfer_id, ? from unnest(cast(? as varchar[])) as transfer_id
+                on conflict do nothing
+                returning transfer_id
+                """, String.class, utc(now), pending.keySet().toArray(String[]::new));
+        pending.keySet().retainAll(recorded);
+        if (pending.isEmpty()) {
+            return;
         }
-        if (!from.getOwnerId().equals(command.initiatorId())) {
-            return "SOURCE_NOT_OWNED";
+        idempotency.recorded(pending.keySet());
+
+        List<TransferRequested> ordinary = new ArrayList<>(pending.size());
+        List<TransferRequested> hot = new ArrayList<>();
+        for (TransferRequested command : pending.values()) {
+            (routesToHotPath(command) ? hot : ordinary).add(command);
         }
-        if (to == null) {
-            return "DESTINATION_NOT_FOUND";
+        Map<String, TransferEvent> results = new HashMap<>();
+        for (TransferEvent outcome : engine.transferAll(ordinary, now)) {
+            results.put(outcome.transferId(), outcome);
         }
-        if (!to.isActive()) {
-            return "DESTINATION_NOT_ACTIVE";
+        if (!hot.isEmpty()) {
+            processedEvents.flush();
+            for (TransferRequested command : hot) {
+                results.put(command.transferId(), hotAccountTransfers.transfer(command, now));
+            }
         }
-        if (!from.canCover(command.amount())) {
-            return "INSUFFICIENT_FUNDS";
+
+        List<OutboxMessage> outcomes = new ArrayList<>(pending.size());
+        for (String transferId : pending.keySet()) {
+            outcomes.add(new OutboxMessage(transferId, Topics.TRANSFER_EVENTS, transferId, results.get(transferId)));
         }
-        return null;
+        outbox.appendAll(outcomes);
+    }
+
+    /**
+     * Inserts the transferId into processed_events unless it is there already. An
+     * insert racing another instance's waits for it and is then skipped, rather
+     * than failing on the primary key and rolling the whole transfer back.
+     */
+    private boolean recordIfAbsent(String transferId, Instant now) {
+        return jdbc.update("""
+                insert into processed_events (transfer_id, processed_at) values (?, ?)
+                on conflict do nothing
+                """, transferId, utc(now)) == 1;
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private boolean routesToHotPath(TransferRequested command) {
+        return !engine.handlesHotAccounts() && hotAccountTransfers.involves(command);
     }
 }
@@ -2,19 +2,25 @@ package com.virtualbank.account.web;
 
 import com.virtualbank.account.AccountService;
 import com.virtualbank.account.web.dto.AccountResponse;
+import com.virtualbank.account.web.dto.BalanceResponse;
+import com.virtualbank.account.web.dto.BulkCreateAccountsRequest;
 import com.virtualbank.account.web.dto.CreateAccountRequest;
 import com.virtualbank.account.web.dto.DepositRequest;
 import com.virtualbank.common.security.CurrentUser;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -22,9 +28,11 @@ import java.util.List;
 public class AccountController {
 
     private final AccountService accountService;
+    private final Clock clock;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, Clock clock) {
         this.accountService = accountService;
+        this.clock = clock;
     }
 
     @PostMapping
@@ -33,6 +41,14 @@ public class AccountController {
         return AccountResponse.from(accountService.create(CurrentUser.requireId(), request));
     }
 
+    @PostMapping("/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<AccountResponse> createAll(@Valid @RequestBody BulkCreateAccountsRequest request) {
+        return accountService.createAll(CurrentUser.requireId(), request.accounts()).stream()
+                .map(AccountResponse::from)
+                .toList();
+    }
+
     @GetMapping
     public List<AccountResponse> list() {
         return accountService.listOwnedBy(CurrentUser.requireId()).stream()
@@ -45,6 +61,15 @@ public class AccountController {
         return AccountResponse.from(accountService.getOwned(id, CurrentUser.requireId()));
     }
 
+    /** The balance as of an ISO-8601 instant, now when {@code asOf} is omitted. */
+    @GetMapping("/{id}/balance")
+    public BalanceResponse balance(@PathVariable String id,
+                                   @RequestParam(required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant asOf) {
+        Instant at = asOf == null ? Instant.now(clock) : asOf;
+        return new BalanceResponse(id, accountService.balanceAsOf(id, CurrentUser.requireId(), at), at);
+    }
+
     @PostMapping("/{id}/freeze")
     public AccountResponse freeze(@PathVariable String id) {
         return AccountResponse.from(accountService.freeze(id, CurrentUser.requireId()));
@@ -0,0 +1,8 @@
+package com.virtualbank.account.web.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** An account's balance at a point in time. */
+public record BalanceResponse(String accountId, BigDecimal balance, Instant asOf) {
+}
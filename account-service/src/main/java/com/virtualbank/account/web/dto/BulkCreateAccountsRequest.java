@@ -0,0 +1,13 @@
+package com.virtualbank.account.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Body of POST /accounts/bulk: up to 5000 accounts for the caller, opened together or not at all. */
+public record BulkCreateAccountsRequest(
+        @NotEmpty @Size(max = 5000) List<@Valid CreateAccountRequest> accounts
+) {
+}
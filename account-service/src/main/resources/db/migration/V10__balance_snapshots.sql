@@ -0,0 +1,12 @@
+-- Periodic balance snapshots: the sum of an account's journal entries up to
+-- taken_at. A balance as of T is the latest snapshot at or before T plus the
+-- entries after it up to T, found through idx_account_entries_account.
+create table account_balance_snapshots (
+    account_id varchar(64)    not null,
+    taken_at   timestamptz    not null,
+    balance    numeric(19, 2) not null,
+    primary key (account_id, taken_at)
+);
+
+-- Lets the snapshot job find the accounts that moved since its last run.
+create index idx_account_entries_created_at on account_entries (created_at);
@@ -0,0 +1,9 @@
+-- The in-memory transfer engine flushes its journal to Postgres asynchronously.
+-- Each flush records, in the same transaction as the balance changes, the last
+-- journal sequence number of the partition it wrote, so recovery replays only
+-- what came after it.
+create table memory_engine_checkpoints (
+    partition_id integer     primary key,
+    seq          bigint      not null,
+    updated_at   timestamptz not null
+);
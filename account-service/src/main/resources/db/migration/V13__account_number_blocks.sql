@@ -0,0 +1,6 @@
+-- Account numbers are handed out in blocks: one nextval reserves the next 1000
+-- values for one instance, which AccountNumbers then issues from memory; its
+-- BLOCK_SIZE must match the increment. A number is the value as 12 digits plus a
+-- Luhn check digit, so at 13 digits it never collides with the random 12-digit
+-- numbers issued before.
+create sequence account_number_blocks start with 1000 increment by 1000;
@@ -0,0 +1,15 @@
+-- Journal records the in-memory engine could not flush: the records of a hot
+-- account whose buckets cannot cover the flushed debit. They are kept here, out
+-- of account_entries and the balances, for an operator to resolve, instead of
+-- failing every later flush of the partition.
+create table memory_engine_parked (
+    partition_id integer        not null,
+    seq          bigint         not null,
+    transfer_id  varchar(64)    not null,
+    account_id   varchar(64)    not null,
+    kind         varchar(16)    not null,
+    amount       numeric(19, 2) not null,
+    reason       varchar(256)   not null,
+    parked_at    timestamptz    not null,
+    primary key (partition_id, seq)
+);
@@ -0,0 +1,18 @@
+-- Wake the outbox relay as soon as a producing transaction commits. NOTIFY is
+-- transactional: the signal is delivered at commit and dropped on rollback, so
+-- the relay never wakes for a row it cannot see. Statement-level, so a
+-- transaction that appends many rows still sends one notification per insert
+-- statement, and Postgres folds duplicates within a transaction into one.
+create function notify_outbox() returns trigger
+    language plpgsql as
+$$
+begin
+    perform pg_notify('vbank_outbox', '');
+    return null;
+end;
+$$;
+
+create trigger outbox_notify
+    after insert on outbox
+    for each statement
+execute function notify_outbox();
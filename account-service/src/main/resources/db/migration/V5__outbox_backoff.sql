@@ -0,0 +1,9 @@
+-- Per-row retry state. A failed row is not retried before next_attempt_at, and a
+-- row that keeps failing is parked (parked_at set) until an operator replays it
+-- through the outbox actuator endpoint.
+alter table outbox add column next_attempt_at timestamptz;
+alter table outbox add column parked_at timestamptz;
+alter table outbox add column last_error varchar(512);
+
+-- The relay's claim scan only walks rows that are neither sent nor parked.
+create index idx_outbox_ready on outbox (created_at, id) where sent_at is null and parked_at is null;
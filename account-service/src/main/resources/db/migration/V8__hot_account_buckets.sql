@@ -0,0 +1,12 @@
+-- Hot accounts (merchant, payroll) keep their balance split across bucket rows
+-- so concurrent transfers lock different rows instead of queueing on one. The
+-- account's balance is accounts.balance plus the sum of its buckets; each part
+-- is non-negative on its own, so the total can never go negative either.
+alter table accounts add column bucket_count integer not null default 0;
+
+create table account_balance_buckets (
+    account_id varchar(64)    not null references accounts (id) on delete cascade,
+    bucket     integer        not null,
+    balance    numeric(19, 2) not null check (balance >= 0),
+    primary key (account_id, bucket)
+);
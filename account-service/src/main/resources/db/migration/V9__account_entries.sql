@@ -0,0 +1,29 @@
+-- The account journal. Every balance movement appends entries in the transaction
+-- that moves the money: a transfer one DEBIT and one CREDIT, a deposit one
+-- DEPOSIT. amount is signed. materialized says whether accounts.balance (or a
+-- hot account's bucket) already includes the entry: in compacted mode credits are
+-- only appended, and the balance is the row plus its unmaterialized entries until
+-- the compactor folds them in.
+--
+-- No foreign key to accounts: its KEY SHARE check would queue every append
+-- behind the row lock of a transfer debiting the same account.
+create table account_entries (
+    id           bigint generated always as identity primary key,
+    account_id   varchar(64)    not null,
+    transfer_id  varchar(64),
+    kind         varchar(16)    not null,
+    amount       numeric(19, 2) not null check (amount <> 0),
+    materialized boolean        not null,
+    created_at   timestamptz    not null
+);
+
+create index idx_account_entries_account on account_entries (account_id, created_at);
+create index idx_account_entries_pending on account_entries (account_id) where not materialized;
+
+-- Opening entries, so the journal of every existing account sums to its balance.
+insert into account_entries (account_id, kind, amount, materialized, created_at)
+select a.id, 'OPENING', a.balance + coalesce(b.balance, 0), true, now()
+from accounts a
+left join (select account_id, sum(balance) as balance from account_balance_buckets group by account_id) b
+       on b.account_id = a.id
+where a.balance + coalesce(b.balance, 0) <> 0;
@@ -0,0 +1,222 @@
+package com.virtualbank.account;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountType;
+import com.virtualbank.account.ledger.BalanceSnapshots;
+import com.virtualbank.account.web.dto.CreateAccountRequest;
+import com.virtualbank.common.web.ApiException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Proves the account operations outside transfers against the real schema.
+ * Concurrent deposits into one account are coalesced by {@link CreditCoalescer}:
+ * they must land as fewer balance updates than deposits, journal one DEPOSIT
+ * entry each, leave the exact sum, and never fail on the version. The coalescing
+ * window is widened so the concurrent deposits reliably share one. Time comes
+ * from a clock the test moves by hand, so entries and snapshots land at exactly
+ * the instants asserted on.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.deposits.coalesce-window-ms=50"})
+@Testcontainers
+class AccountServiceTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final String OWNER = "owner-1";
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class ManualClockConfiguration {
+
+        @Bean
+        ManualClock manualClock() {
+            return new ManualClock(Instant.parse("2026-01-01T00:00:00Z"));
+        }
+    }
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BalanceSnapshots snapshots;
+
+    @Autowired
+    private ManualClock clock;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("delete from outbox");
+        jdbc.update("delete from processed_events");
+        jdbc.update("delete from account_entries");
+        jdbc.update("delete from account_balance_snapshots");
+        jdbc.update("delete from accounts");
+    }
+
+    @Test
+    void concurrentDepositsAreCoalescedAndEachIsJournaled() throws InterruptedException {
+        Account account = accountService.create(OWNER, new CreateAccountRequest(AccountType.CHECKING, "USD"));
+        long versionBefore = versionOf(account);
+
+        int deposits = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(deposits);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(deposits);
+        List<BigDecimal> balances = Collections.synchronizedList(new ArrayList<>());
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < deposits; i++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    balances.add(accountService.deposit(account.getId(), OWNER, new BigDecimal("5.00")).getBalance());
+                } catch (Throwable e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        assertThat(failures).isEmpty();
+        assertThat(balanceOf(account)).isEqualByComparingTo("100.00");
+        // Every caller sees the balance right after its own credit: 5.00, 10.00, ... 100.00.
+        assertThat(balances).hasSize(deposits).extracting(BigDecimal::stripTrailingZeros).doesNotHaveDuplicates()
+                .allMatch(balance -> balance.signum() > 0 && balance.compareTo(new BigDecimal("100.00")) <= 0);
+        assertThat(jdbc.queryForObject(
+                "select count(*) from account_entries where account_id = ? and kind = 'DEPOSIT'",
+                Integer.class, account.getId())).isEqualTo(deposits);
+        assertThat(jdbc.queryForObject(
+                "select sum(amount) from account_entries where account_id = ? and kind = 'DEPOSIT'",
+                BigDecimal.class, account.getId())).isEqualByComparingTo("100.00");
+        // Each window is one update; twenty deposits released together fit in a few.
+        assertThat(versionOf(account) - versionBefore).isPositive().isLessThan(deposits);
+    }
+
+    @Test
+    void depositIntoAFrozenAccountIsRefused() {
+        Account account = accountService.create(OWNER, new CreateAccountRequest(AccountType.CHECKING, "USD"));
+        accountService.freeze(account.getId(), OWNER);
+
+        assertThatThrownBy(() -> accountService.deposit(account.getId(), OWNER, BigDecimal.TEN))
+                .isInstanceOf(ApiException.class);
+        assertThat(balanceOf(account)).isEqualByComparingTo("0.00");
+        assertThat(jdbc.queryForObject("select count(*) from account_entries where account_id = ?",
+                Integer.class, account.getId())).isZero();
+    }
+
+    @Test
+    void balanceAsOfReplaysTheLatestSnapshotPlusLaterEntries() {
+        Account account = accountService.create(OWNER, new CreateAccountRequest(AccountType.CHECKING, "USD"));
+
+        accountService.deposit(account.getId(), OWNER, new BigDecimal("30.00"));
+        Instant afterFirst = clock.advance(Duration.ofSeconds(1));
+        snapshots.snapshot(afterFirst);
+        clock.advance(Duration.ofSeconds(1));
+        accountService.deposit(account.getId(), OWNER, new BigDecimal("20.00"));
+        Instant afterSecond = clock.advance(Duration.ofSeconds(1));
+        clock.advance(Duration.ofSeconds(1));
+        accountService.deposit(account.getId(), OWNER, new BigDecimal("5.00"));
+
+        assertThat(accountService.balanceAsOf(account.getId(), OWNER, afterFirst)).isEqualByComparingTo("30.00");
+        assertThat(accountService.balanceAsOf(account.getId(), OWNER, afterSecond)).isEqualByComparingTo("50.00");
+        assertThat(accountService.balanceAsOf(account.getId(), OWNER, clock.instant())).isEqualByComparingTo("55.00");
+    }
+
+    @Test
+    void bulkCreateOpensAccountsWithDistinctCheckDigitedNumbers() {
+        // More than one block of numbers, so a second block is reserved mid-request.
+        List<CreateAccountRequest> requests = Collections.nCopies(1500,
+                new CreateAccountRequest(AccountType.SAVINGS, "USD"));
+
+        List<Account> opened = accountService.createAll(OWNER, requests);
+        Account single = accountService.create(OWNER, new CreateAccountRequest(AccountType.CHECKING, "USD"));
+
+        assertThat(accountService.listOwnedBy(OWNER)).hasSize(1501);
+        assertThat(opened).extracting(Account::getAccountNumber)
+                .doesNotHaveDuplicates()
+                .allMatch(AccountNumbers::isValid)
+                .doesNotContain(single.getAccountNumber());
+        assertThat(AccountNumbers.isValid(single.getAccountNumber())).isTrue();
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return jdbc.queryForObject("select balance from accounts where id = ?", BigDecimal.class, account.getId());
+    }
+
+    private long versionOf(Account account) {
+        return jdbc.queryForObject("select version from accounts where id = ?", Long.class, account.getId());
+    }
+
+    /** A clock that only moves when told to. */
+    static final class ManualClock extends Clock {
+
+        private volatile Instant now;
+
+        ManualClock(Instant start) {
+            this.now = start;
+        }
+
+        /** Moves the clock forward and returns the new time. */
+        Instant advance(Duration by) {
+            now = now.plus(by);
+            return now;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return zone.equals(ZoneOffset.UTC) ? this : Clock.fixed(now, zone);
+        }
+    }
+}
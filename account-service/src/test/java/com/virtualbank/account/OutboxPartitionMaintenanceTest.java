@@ -0,0 +1,113 @@
+package com.virtualbank.account;
+
+import com.virtualbank.common.outbox.OutboxPartitionMaintenance;
+import com.virtualbank.common.outbox.OutboxProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves partition maintenance against the migrated outbox, which has no
+ * default partition: it creates today's partition and premake-days more so
+ * appends on those days succeed, and it drops a partition past retention only
+ * once every row in it is sent. Each test runs the job with its own clock; the
+ * scheduled run is pushed out of the way so it cannot hold the advisory lock.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.outbox.partitions.initial-delay-ms=3600000"})
+@Testcontainers
+class OutboxPartitionMaintenanceTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("delete from outbox");
+    }
+
+    @Test
+    void partitionsAreCreatedAheadSoAppendsOnThoseDaysSucceed() {
+        // Well past the week of partitions the migration created.
+        LocalDate day = TODAY.plusDays(30);
+        assertThat(exists(day)).isFalse();
+
+        maintenance(day, 7).maintain();
+
+        for (int i = 0; i <= 3; i++) {
+            assertThat(exists(day.plusDays(i))).as("partition for %s", day.plusDays(i)).isTrue();
+        }
+        assertThat(exists(day.plusDays(4))).isFalse();
+        insert(day.plusDays(3), false);
+        assertThat(jdbc.queryForObject("select count(*) from " + partition(day.plusDays(3)), Integer.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void expiredPartitionsAreDroppedOnlyOnceEveryRowIsSent() {
+        LocalDate sentDay = TODAY.plusDays(1);
+        insert(TODAY, false);
+        insert(sentDay, true);
+        assertThat(exists(TODAY)).isTrue();
+        assertThat(exists(sentDay)).isTrue();
+
+        // Both days are past a 7-day retention twenty days from now.
+        maintenance(TODAY.plusDays(20), 7).maintain();
+
+        assertThat(exists(sentDay)).isFalse();
+        assertThat(exists(TODAY)).isTrue();
+        assertThat(jdbc.queryForObject("select count(*) from outbox", Integer.class)).isEqualTo(1);
+    }
+
+    private OutboxPartitionMaintenance maintenance(LocalDate today, int retentionDays) {
+        OutboxProperties.Partitions settings = new OutboxProperties.Partitions();
+        settings.setRetentionDays(retentionDays);
+        settings.setPremakeDays(3);
+        Clock clock = Clock.fixed(today.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return new OutboxPartitionMaintenance(jdbc, clock, settings, null, null);
+    }
+
+    private void insert(LocalDate day, boolean sent) {
+        jdbc.update("""
+                insert into outbox (id, topic, message_key, payload, type, created_at, sent_at)
+                values (?, 'vbank.test', 'key-a', '{}', 'Test', ?::timestamptz, ?::timestamptz)
+                """, UUID.randomUUID().toString(), day + " 12:00:00+00", sent ? day + " 12:00:01+00" : null);
+    }
+
+    private boolean exists(LocalDate day) {
+        return jdbc.queryForObject("select to_regclass(?)", String.class, partition(day)) != null;
+    }
+
+    private static String partition(LocalDate day) {
+        return "outbox_p" + SUFFIX.format(day);
+    }
+}
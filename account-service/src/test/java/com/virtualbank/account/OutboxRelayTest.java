@@ -0,0 +1,290 @@
+package com.virtualbank.account;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.virtualbank.common.outbox.OutboxAppender;
+import com.virtualbank.common.outbox.OutboxEntry;
+import com.virtualbank.common.outbox.OutboxFastPath;
+import com.virtualbank.common.outbox.OutboxMetrics;
+import com.virtualbank.common.outbox.OutboxNotificationListener;
+import com.virtualbank.common.outbox.OutboxProperties;
+import com.virtualbank.common.outbox.OutboxRelay;
+import com.virtualbank.common.outbox.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves the polling relay against the real outbox: only the oldest unsent row
+ * of a key is claimed, a batch is marked sent in one update, no more than
+ * max-in-flight sends are outstanding, and a failed row backs off, is parked,
+ * and holds back the rest of its key meanwhile. The fast path and the NOTIFY
+ * listener are started by hand so each is seen publishing on its own.
+ *
+ * <p>The relay publishes through a {@link MockProducer} that acknowledges nothing
+ * by itself; each test answers the sends in the order they were made. The relay
+ * is a bean of this test so its passes run in their own transactions, and the
+ * scheduled poll is pushed out of the way.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.outbox.poll-interval-ms=3600000",
+        "vbank.outbox.notify.enabled=false",
+        "vbank.outbox.fast-path.enabled=false",
+        "vbank.outbox.max-in-flight=2",
+        "vbank.outbox.retry.initial-backoff-ms=60000",
+        "vbank.outbox.retry.jitter=0",
+        "vbank.outbox.retry.max-attempts=2"})
+@Testcontainers
+class OutboxRelayTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final String TOPIC = "vbank.test";
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class MockProducerConfiguration {
+
+        @Bean
+        MockProducer<String, String> relayProducer() {
+            return new MockProducer<>(false, new StringSerializer(), new StringSerializer()) {
+                @Override
+                public void close(Duration timeout) {
+                    // The template closes its producer after every send; keep the one the test inspects open.
+                }
+            };
+        }
+
+        @Bean
+        OutboxRelay outboxRelay(OutboxRepository repository, MockProducer<String, String> relayProducer, Clock clock,
+                                OutboxProperties properties, OutboxMetrics metrics) {
+            return new OutboxRelay(repository, new KafkaTemplate<>(new MockProducerFactory<>(() -> relayProducer)),
+                    clock, properties, metrics);
+        }
+    }
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private MockProducer<String, String> producer;
+
+    @Autowired
+    private OutboxRepository outbox;
+
+    @Autowired
+    private OutboxProperties properties;
+
+    @Autowired
+    private OutboxMetrics metrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Clock clock;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clean() {
+        producer.clear();
+        jdbc.update("delete from outbox");
+    }
+
+    @Test
+    void onlyTheOldestUnsentRowOfAKeyIsClaimedAndABatchIsMarkedSentAtOnce() throws Exception {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String first = insert("key-a", base);
+        String other = insert("key-b", base.plusMillis(1));
+        String second = insert("key-a", base.plusMillis(2));
+
+        assertThat(answer(pass(), true, true)).isEqualTo(2);
+
+        assertThat(producer.history()).extracting(ProducerRecord::value).containsExactly(first, other);
+        Map<String, Instant> sentAt = sentAt();
+        assertThat(sentAt.get(first)).isNotNull().isEqualTo(sentAt.get(other));
+        assertThat(sentAt.get(second)).isNull();
+
+        // The next row for the key is claimed once the one before it is sent.
+        assertThat(answer(pass(), true)).isEqualTo(1);
+        assertThat(producer.history()).extracting(ProducerRecord::value).containsExactly(first, other, second);
+        assertThat(sentAt().get(second)).isNotNull();
+    }
+
+    @Test
+    void noMoreThanMaxInFlightSendsAreOutstanding() throws Exception {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        for (int i = 0; i < 5; i++) {
+            insert("key-" + i, base.plusMillis(i));
+        }
+
+        CompletableFuture<Integer> pass = pass();
+        awaitCondition(() -> producer.history().size() == properties.getMaxInFlight());
+        Thread.sleep(200);
+        assertThat(producer.history()).hasSize(2);
+
+        assertThat(answer(pass, true, true, true, true, true)).isEqualTo(5);
+        assertThat(sentAt().values()).doesNotContainNull().hasSize(5);
+    }
+
+    @Test
+    void aFailedRowBacksOffThenIsParkedAndHoldsBackItsKey() throws Exception {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String failing = insert("key-a", base);
+        String behind = insert("key-a", base.plusMillis(1));
+        String other = insert("key-b", base.plusMillis(2));
+        double failures = failedAttempts();
+
+        Instant before = Instant.now();
+        answer(pass(), false, true);
+        Instant after = Instant.now();
+
+        OutboxEntry backingOff = outbox.findById(failing).orElseThrow();
+        assertThat(backingOff.getAttempts()).isEqualTo(1);
+        assertThat(backingOff.isParked()).isFalse();
+        assertThat(backingOff.getLastError()).isNotBlank();
+        // No jitter: the first retry waits exactly the initial backoff.
+        assertThat(backingOff.getNextAttemptAt())
+                .isBetween(before.plusSeconds(60).truncatedTo(ChronoUnit.MILLIS), after.plusSeconds(60));
+        assertThat(sentAt().get(other)).isNotNull();
+        assertThat(failedAttempts()).isEqualTo(failures + 1);
+
+        // Backing off: neither it nor the row behind it is claimed.
+        assertThat(answer(pass())).isZero();
+
+        jdbc.update("update outbox set next_attempt_at = now() - interval '1 second' where id = ?", failing);
+        assertThat(answer(pass(), false)).isEqualTo(1);
+        OutboxEntry parked = outbox.findById(failing).orElseThrow();
+        assertThat(parked.getAttempts()).isEqualTo(2);
+        assertThat(parked.isParked()).isTrue();
+
+        // Parked rows are skipped, but the row behind still waits for it.
+        assertThat(answer(pass())).isZero();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> outbox.unpark(failing));
+        assertThat(answer(pass(), true)).isEqualTo(1);
+        assertThat(answer(pass(), true)).isEqualTo(1);
+        assertThat(producer.history()).extracting(ProducerRecord::value)
+                .containsExactly(failing, other, failing, failing, behind);
+        assertThat(sentAt().values()).doesNotContainNull();
+    }
+
+    @Test
+    void theFastPathPublishesACommittedTransactionsRows() throws Exception {
+        OutboxFastPath fastPath = new OutboxFastPath(relay, properties);
+        OutboxAppender appender = new OutboxAppender(outbox, jdbc, objectMapper, clock, fastPath, metrics);
+        String eventId = UUID.randomUUID().toString();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    appender.append(eventId, TOPIC, "key-a", Map.of("amount", "10.00")));
+
+            awaitCondition(producer::completeNext);
+            awaitCondition(() -> sentAt().get(eventId) != null);
+            assertThat(producer.history()).extracting(ProducerRecord::key).containsExactly("key-a");
+        } finally {
+            fastPath.destroy();
+        }
+    }
+
+    @Test
+    void theListenerPublishesWhenAnInsertIsNotified() throws Exception {
+        OutboxNotificationListener listener = new OutboxNotificationListener(dataSource, relay, properties);
+        listener.start();
+        try {
+            String id = insert("key-a", Instant.now());
+
+            awaitCondition(producer::completeNext);
+            awaitCondition(() -> sentAt().get(id) != null);
+        } finally {
+            listener.stop();
+        }
+    }
+
+    /** Inserts an unsent row whose payload is its own id, so sends can be matched to rows. */
+    private String insert(String key, Instant createdAt) {
+        String id = UUID.randomUUID().toString();
+        outbox.save(new OutboxEntry(id, TOPIC, key, id, "Test", createdAt));
+        return id;
+    }
+
+    private CompletableFuture<Integer> pass() {
+        return CompletableFuture.supplyAsync(relay::publishBatch);
+    }
+
+    /** Answers the pass's sends in the order they were made, true acknowledging and false failing, then waits for it. */
+    private int answer(CompletableFuture<Integer> pass, boolean... acks) throws Exception {
+        for (boolean ack : acks) {
+            awaitCondition(() -> ack ? producer.completeNext() : producer.errorNext(new KafkaException("broker down")));
+        }
+        return pass.get(10, TimeUnit.SECONDS);
+    }
+
+    private Map<String, Instant> sentAt() {
+        return outbox.findAll().stream()
+                .collect(HashMap::new, (map, row) -> map.put(row.getId(), row.getSentAt()), Map::putAll);
+    }
+
+    private double failedAttempts() {
+        Counter counter = meterRegistry.find("vbank.outbox.failed.attempts").tag("topic", TOPIC).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 10s").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.virtualbank.account.memory;
+
+import com.virtualbank.account.AccountService;
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.domain.AccountStatus;
+import com.virtualbank.account.domain.AccountType;
+import com.virtualbank.account.domain.ProcessedEventRepository;
+import com.virtualbank.account.hot.HotAccounts;
+import com.virtualbank.account.ledger.Ledger;
+import com.virtualbank.account.transfer.HotAccountTransfers;
+import com.virtualbank.account.transfer.TransferService;
+import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.idempotency.IdempotencyGuard;
+import com.virtualbank.common.outbox.OutboxAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the same contended workload (many transfers among a few accounts, from
+ * many threads) through the locking JPA engine and through
+ * {@link InMemoryTransferEngine}, both behind {@link TransferService}, and logs
+ * the throughput of each. Money must be conserved on both paths. Off by default;
+ * run with {@code -Dvbank.benchmark=true}. The engine's correctness is covered by
+ * {@link MemoryJournalTest} and {@link MemoryPartitionTest}, which always run.
+ */
+@SpringBootTest(
+        properties = "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration")
+@Testcontainers
+@EnabledIfSystemProperty(named = "vbank.benchmark", matches = "true")
+class InMemoryEngineBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryEngineBenchmarkTest.class);
+
+    private static final int ACCOUNTS = 20;
+    private static final int TRANSFERS = 5_000;
+    private static final int THREADS = 16;
+    private static final String OWNER = "bench-owner";
+    private static final BigDecimal OPENING = new BigDecimal("1000.00");
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private TransferService jpaTransfers;
+
+    @Autowired
+    private AccountRepository accounts;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ProcessedEventRepository processedEvents;
+
+    @Autowired
+    private IdempotencyGuard idempotency;
+
+    @Autowired
+    private OutboxAppender outbox;
+
+    @Autowired
+    private HotAccountTransfers hotAccountTransfers;
+
+    @Autowired
+    private HotAccounts hotAccounts;
+
+    @Autowired
+    private Ledger ledger;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Clock clock;
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void memoryEngineAgainstTheJpaPath() throws Exception {
+        List<Account> jpaAccounts = seed();
+        Duration jpa = run(jpaAccounts, jpaTransfers::apply);
+        assertConserved(jpaAccounts);
+
+        MemoryEngineProperties properties = new MemoryEngineProperties();
+        properties.setJournalDir(journalDir);
+        InMemoryTransferEngine engine = new InMemoryTransferEngine(properties, jdbc, transactionManager,
+                hotAccounts, ledger, clock, meterRegistry);
+        engine.start();
+        Duration memory;
+        List<Account> memoryAccounts = seed();
+        try {
+            // Built by hand, so the transaction TransferService.apply expects comes from here.
+            TransferService memoryTransfers = new TransferService(engine, hotAccountTransfers, processedEvents,
+                    idempotency, outbox, jdbc, clock);
+            TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+            memory = run(memoryAccounts,
+                    command -> transactions.executeWithoutResult(status -> memoryTransfers.apply(command)));
+            engine.flush();
+        } finally {
+            engine.stop();
+        }
+        assertConserved(memoryAccounts);
+
+        log.info("{} transfers among {} accounts from {} threads", TRANSFERS, ACCOUNTS, THREADS);
+        log.info("  jpa (locking): {} ms, {} transfers/s", jpa.toMillis(), Math.round(perSecond(jpa)));
+        log.info("  memory:        {} ms, {} transfers/s", memory.toMillis(), Math.round(perSecond(memory)));
+    }
+
+    private Duration run(List<Account> among, Consumer<TransferRequested> apply) throws Exception {
+        List<TransferRequested> commands = new ArrayList<>(TRANSFERS);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = random.nextInt(among.size());
+            int to = (from + 1 + random.nextInt(among.size() - 1)) % among.size();
+            commands.add(new TransferRequested(UUID.randomUUID().toString(), OWNER, among.get(from).getId(),
+                    among.get(to).getId(), new BigDecimal("1.00"), "USD", Instant.now()));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        List<Future<?>> done = new ArrayList<>(TRANSFERS);
+        for (TransferRequested command : commands) {
+            done.add(pool.submit(() -> apply.accept(command)));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        pool.shutdown();
+        return elapsed;
+    }
+
+    private List<Account> seed() {
+        List<Account> seeded = new ArrayList<>(ACCOUNTS);
+        Instant now = Instant.now();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            seeded.add(accounts.save(new Account(UUID.randomUUID().toString(), OWNER,
+                    UUID.randomUUID().toString().substring(0, 12), AccountType.CHECKING, OPENING, "USD",
+                    AccountStatus.ACTIVE, now, now)));
+        }
+        return seeded;
+    }
+
+    private void assertConserved(List<Account> seeded) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : seeded) {
+            BigDecimal balance = accountService.getOwned(account.getId(), account.getOwnerId()).getBalance();
+            assertThat(balance).isNotNegative();
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(OPENING.multiply(BigDecimal.valueOf(seeded.size())));
+    }
+
+    private static double perSecond(Duration elapsed) {
+        return TRANSFERS * 1000.0 / Math.max(1, elapsed.toMillis());
+    }
+}
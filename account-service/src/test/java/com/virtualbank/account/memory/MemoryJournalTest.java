@@ -0,0 +1,183 @@
+package com.virtualbank.account.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves the journal's recovery contract on real segment files: intact records
+ * come back in order, a torn or corrupted record ends the readable journal and is
+ * overwritten by the next append, numbering continues past a checkpoint, and
+ * truncation only deletes segments wholly at or below the flushed sequence.
+ */
+class MemoryJournalTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversEveryIntactRecordInOrder() throws IOException {
+        MemoryJournal journal = open(SEGMENT_BYTES);
+        journal.recover(0);
+        journal.append(MemoryJournal.Kind.DEBIT, "t-1", "acc-a", new BigDecimal("10.00"));
+        journal.append(MemoryJournal.Kind.CREDIT, "t-1", "acc-b", new BigDecimal("10.00"));
+        journal.append(MemoryJournal.Kind.REVERSAL, "t-2", "acc-a", new BigDecimal("0.01"));
+        journal.close();
+
+        MemoryJournal reopened = open(SEGMENT_BYTES);
+        List<MemoryJournal.Record> records = reopened.recover(0);
+
+        assertThat(records).containsExactly(
+                new MemoryJournal.Record(1, MemoryJournal.Kind.DEBIT, "t-1", "acc-a", new BigDecimal("10.00")),
+                new MemoryJournal.Record(2, MemoryJournal.Kind.CREDIT, "t-1", "acc-b", new BigDecimal("10.00")),
+                new MemoryJournal.Record(3, MemoryJournal.Kind.REVERSAL, "t-2", "acc-a", new BigDecimal("0.01")));
+        assertThat(reopened.append(MemoryJournal.Kind.DEBIT, "t-3", "acc-a", BigDecimal.ONE)).isEqualTo(4);
+        reopened.close();
+    }
+
+    @Test
+    void tornRecordEndsRecoveryAndIsOverwritten() throws IOException {
+        MemoryJournal journal = open(SEGMENT_BYTES);
+        journal.recover(0);
+        journal.append(MemoryJournal.Kind.DEBIT, "t-1", "acc-a", BigDecimal.TEN);
+        journal.append(MemoryJournal.Kind.CREDIT, "t-1", "acc-b", BigDecimal.TEN);
+        journal.close();
+        // A crash before the length was written leaves it zero.
+        writeInt(onlySegment(), recordOffset(1), 0);
+
+        MemoryJournal reopened = open(SEGMENT_BYTES);
+        assertThat(reopened.recover(0)).extracting(MemoryJournal.Record::seq).containsExactly(1L);
+        assertThat(reopened.append(MemoryJournal.Kind.CREDIT, "t-9", "acc-c", BigDecimal.ONE)).isEqualTo(2);
+        reopened.close();
+
+        MemoryJournal again = open(SEGMENT_BYTES);
+        assertThat(again.recover(0)).extracting(MemoryJournal.Record::transferId).containsExactly("t-1", "t-9");
+        again.close();
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsRecovery() throws IOException {
+        MemoryJournal journal = open(SEGMENT_BYTES);
+        journal.recover(0);
+        journal.append(MemoryJournal.Kind.DEBIT, "t-1", "acc-a", BigDecimal.TEN);
+        journal.append(MemoryJournal.Kind.CREDIT, "t-1", "acc-b", BigDecimal.TEN);
+        journal.append(MemoryJournal.Kind.DEBIT, "t-2", "acc-a", BigDecimal.ONE);
+        journal.close();
+        Path segment = onlySegment();
+        // Flip a byte inside the second record's sequence number.
+        int offset = recordOffset(1) + Integer.BYTES + 3;
+        writeByte(segment, offset, (byte) (readByte(segment, offset) ^ 0x5a));
+
+        MemoryJournal reopened = open(SEGMENT_BYTES);
+        assertThat(reopened.recover(0)).extracting(MemoryJournal.Record::seq).containsExactly(1L);
+        reopened.close();
+    }
+
+    @Test
+    void numberingContinuesPastACheckpointWhoseSegmentsAreGone() throws IOException {
+        MemoryJournal journal = open(SEGMENT_BYTES);
+        assertThat(journal.recover(41)).isEmpty();
+        assertThat(journal.append(MemoryJournal.Kind.DEBIT, "t-1", "acc-a", BigDecimal.ONE)).isEqualTo(42);
+        journal.close();
+    }
+
+    @Test
+    void truncateDeletesOnlySegmentsWhollyFlushed() throws IOException {
+        // Small segments, so a handful of records roll over several of them.
+        MemoryJournal journal = open(256);
+        journal.recover(0);
+        for (int i = 1; i <= 20; i++) {
+            journal.append(MemoryJournal.Kind.DEBIT, "t-" + i, "acc-a", BigDecimal.ONE);
+        }
+        journal.sync();
+        List<Long> firstSeqs = segmentFirstSeqs();
+        assertThat(firstSeqs).hasSizeGreaterThan(2);
+
+        // Everything up to the last record of the second segment is flushed.
+        journal.truncate(firstSeqs.get(2) - 1);
+        assertThat(segmentFirstSeqs()).isEqualTo(firstSeqs.subList(2, firstSeqs.size()));
+
+        // Short of a whole segment, nothing goes.
+        journal.truncate(firstSeqs.get(2));
+        assertThat(segmentFirstSeqs()).isEqualTo(firstSeqs.subList(2, firstSeqs.size()));
+        journal.close();
+
+        MemoryJournal reopened = open(256);
+        List<MemoryJournal.Record> left = reopened.recover(firstSeqs.get(2) - 1);
+        assertThat(left.getFirst().seq()).isEqualTo(firstSeqs.get(2));
+        assertThat(left.getLast().seq()).isEqualTo(20);
+        reopened.close();
+    }
+
+    private MemoryJournal open(int segmentBytes) {
+        return new MemoryJournal(dir, 0, segmentBytes, true);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.toList();
+            assertThat(segments).hasSize(1);
+            return segments.getFirst();
+        }
+    }
+
+    private List<Long> segmentFirstSeqs() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .map(name -> Long.parseLong(name.substring("partition-000-".length(), name.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /** Offset of the record at {@code index} in the only segment, walking the length prefixes. */
+    private int recordOffset(int index) throws IOException {
+        Path segment = onlySegment();
+        int offset = 0;
+        for (int i = 0; i < index; i++) {
+            offset += Integer.BYTES + readInt(segment, offset);
+        }
+        return offset;
+    }
+
+    private static int readInt(Path file, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(bytes, offset);
+            return bytes.flip().getInt();
+        }
+    }
+
+    private static byte readByte(Path file, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(1);
+            channel.read(bytes, offset);
+            return bytes.flip().get();
+        }
+    }
+
+    private static void writeInt(Path file, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), offset);
+        }
+    }
+
+    private static void writeByte(Path file, int offset, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {value}), offset);
+        }
+    }
+}
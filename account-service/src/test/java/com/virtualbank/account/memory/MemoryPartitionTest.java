@@ -0,0 +1,137 @@
+package com.virtualbank.account.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves a partition moves money at most once per transfer: a redelivered debit
+ * or credit is answered without moving money again, a redelivered transfer that
+ * was reversed fails the way it first did, and after a restart the journal both
+ * hands back the records past the checkpoint for flushing and keeps every
+ * journaled transfer from being applied again.
+ */
+class MemoryPartitionTest {
+
+    private static final String OWNER = "owner-1";
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, MemoryPartition.AccountState> postgres = new HashMap<>();
+    private MemoryPartition partition;
+
+    @AfterEach
+    void stop() throws Exception {
+        if (partition != null) {
+            partition.stop();
+        }
+    }
+
+    @Test
+    void redeliveredDebitAndCreditMoveMoneyOnce() throws Exception {
+        seed("acc-a", "100.00", "ACTIVE");
+        seed("acc-b", "0.00", "ACTIVE");
+        partition = start(0);
+
+        for (int delivery = 0; delivery < 2; delivery++) {
+            assertThat(get(partition.debit("t-1", "acc-a", OWNER, new BigDecimal("30.00"), null))).isNull();
+            assertThat(get(partition.credit("t-1", "acc-b", new BigDecimal("30.00")))).isTrue();
+        }
+
+        MemoryPartition.Drain drain = get(partition.drain());
+        assertThat(drain.records()).hasSize(2);
+        assertThat(drain.deltas().get("acc-a")).isEqualByComparingTo("-30.00");
+        assertThat(drain.deltas().get("acc-b")).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void redeliveredReversedTransferFailsAsItFirstDid() throws Exception {
+        seed("acc-a", "100.00", "ACTIVE");
+        partition = start(0);
+
+        assertThat(get(partition.debit("t-1", "acc-a", OWNER, new BigDecimal("30.00"), null))).isNull();
+        // The destination went inactive between the check and the credit.
+        assertThat(get(partition.reverse("t-1", "acc-a", new BigDecimal("30.00")))).isTrue();
+
+        // Redelivered, say because the transaction recording the failure rolled back.
+        assertThat(get(partition.debit("t-1", "acc-a", OWNER, new BigDecimal("30.00"), null)))
+                .isEqualTo(MemoryPartition.REVERSED);
+
+        MemoryPartition.Drain drain = get(partition.drain());
+        assertThat(drain.records()).extracting(MemoryJournal.Record::kind)
+                .containsExactly(MemoryJournal.Kind.DEBIT, MemoryJournal.Kind.REVERSAL);
+        assertThat(drain.deltas().get("acc-a")).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void recoveryHandsBackRecordsPastTheCheckpointAndRemembersEveryTransfer() throws Exception {
+        seed("acc-a", "100.00", "ACTIVE");
+        seed("acc-b", "0.00", "ACTIVE");
+        MemoryPartition first = start(0);
+        get(first.debit("t-1", "acc-a", OWNER, new BigDecimal("10.00"), null));
+        get(first.credit("t-1", "acc-b", new BigDecimal("10.00")));
+        get(first.debit("t-2", "acc-a", OWNER, new BigDecimal("5.00"), null));
+        first.stop();
+
+        // Postgres holds the first record (seq 1) only.
+        partition = start(1);
+        MemoryPartition.Drain recovered = get(partition.drain());
+        assertThat(recovered.records()).extracting(MemoryJournal.Record::seq).containsExactly(2L, 3L);
+        assertThat(recovered.seq()).isEqualTo(3);
+
+        // Both transfers are in the journal, flushed or not, so neither moves money again.
+        assertThat(get(partition.debit("t-1", "acc-a", OWNER, new BigDecimal("10.00"), null))).isNull();
+        assertThat(get(partition.credit("t-1", "acc-b", new BigDecimal("10.00")))).isTrue();
+        assertThat(get(partition.debit("t-2", "acc-a", OWNER, new BigDecimal("5.00"), null))).isNull();
+        assertThat(get(partition.drain()).records()).isEmpty();
+
+        // A new transfer is numbered after the journal.
+        get(partition.debit("t-3", "acc-a", OWNER, new BigDecimal("1.00"), null));
+        assertThat(get(partition.drain()).records()).extracting(MemoryJournal.Record::seq).containsExactly(4L);
+    }
+
+    @Test
+    void debitChecksFundsOwnershipAndTheDestination() throws Exception {
+        seed("acc-a", "10.00", "ACTIVE");
+        partition = start(0);
+
+        assertThat(get(partition.debit("t-1", "acc-a", OWNER, new BigDecimal("10.01"), null)))
+                .isEqualTo("INSUFFICIENT_FUNDS");
+        assertThat(get(partition.debit("t-2", "acc-a", "someone-else", BigDecimal.ONE, null)))
+                .isEqualTo("SOURCE_NOT_OWNED");
+        assertThat(get(partition.debit("t-3", "acc-a", OWNER, BigDecimal.ONE, "DESTINATION_NOT_FOUND")))
+                .isEqualTo("DESTINATION_NOT_FOUND");
+        assertThat(get(partition.debit("t-4", "acc-x", OWNER, BigDecimal.ONE, null))).isEqualTo("SOURCE_NOT_FOUND");
+        assertThat(get(partition.drain()).records()).isEmpty();
+    }
+
+    private void seed(String accountId, String balance, String status) {
+        postgres.put(accountId, new MemoryPartition.AccountState(OWNER, status, new BigDecimal(balance)));
+    }
+
+    private MemoryPartition start(long checkpoint) {
+        MemoryPartition started = new MemoryPartition(0, new MemoryJournal(dir, 0, 64 * 1024, false),
+                accountId -> {
+                    MemoryPartition.AccountState state = postgres.get(accountId);
+                    return state == null ? null
+                            : new MemoryPartition.AccountState(state.ownerId, state.status, state.balance);
+                }, 1000);
+        started.recover(checkpoint);
+        started.start();
+        return started;
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,45 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.ledger.LedgerCompactor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every {@link TransferServiceTest} scenario with credits appended to the
+ * journal instead of written to the destination row, so balances read as row
+ * plus pending entries must come out exactly as they do in place, and checks
+ * that the compactor folds the pending entries without changing any balance.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.transfer.engine=conditional",
+        "vbank.ledger.materialization=compacted",
+        // The test runs the compactor itself.
+        "vbank.ledger.compaction.interval-ms=3600000"})
+class CompactedLedgerTest extends TransferServiceTest {
+
+    @Autowired
+    private LedgerCompactor compactor;
+
+    @Test
+    void compactorFoldsPendingCreditsIntoTheRow() {
+        Account source = seedAccount(OWNER, new BigDecimal("100.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("5.00"));
+
+        transferService.apply(command(source, destination, new BigDecimal("30.00")));
+        assertThat(rowBalanceOf(destination)).isEqualByComparingTo("5.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("35.00");
+
+        compactor.compact();
+
+        assertThat(rowBalanceOf(destination)).isEqualByComparingTo("35.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("35.00");
+        assertThat(balanceOf(source)).isEqualByComparingTo("70.00");
+    }
+}
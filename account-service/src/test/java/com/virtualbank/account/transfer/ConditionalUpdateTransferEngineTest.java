@@ -0,0 +1,15 @@
+package com.virtualbank.account.transfer;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs every {@link TransferServiceTest} scenario, the twenty concurrent
+ * transfers included, against {@link ConditionalUpdateTransferEngine}, so the
+ * guarded-update path is held to exactly the outcomes and failure reasons of the
+ * locking one.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.transfer.engine=conditional"})
+class ConditionalUpdateTransferEngineTest extends TransferServiceTest {
+}
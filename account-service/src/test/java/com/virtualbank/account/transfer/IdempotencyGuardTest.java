@@ -0,0 +1,182 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.AccountService;
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.domain.AccountStatus;
+import com.virtualbank.account.domain.AccountType;
+import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.idempotency.IdempotencyGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves each path the {@link IdempotencyGuard} answers by: committed ids from
+ * the recent ids, new ids from the filter without a read, ids the filter cannot
+ * rule out from the table, and that maintenance prunes only expired ids. An id
+ * another instance records after the filter was built passes the guard as new,
+ * so the transfer must still be skipped by the processed_events insert.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.idempotency.retention=14d"})
+@Testcontainers
+class IdempotencyGuardTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final String OWNER = "owner-1";
+
+    @Autowired
+    private IdempotencyGuard guard;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accounts;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("delete from outbox");
+        jdbc.update("delete from processed_events");
+        jdbc.update("delete from account_entries");
+        accounts.deleteAll();
+    }
+
+    @Test
+    void aCommittedIdIsAnsweredFromTheRecentIds() {
+        String committed = UUID.randomUUID().toString();
+        String rolledBack = UUID.randomUUID().toString();
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        transactions.executeWithoutResult(status -> {
+            insert(committed, Instant.now());
+            guard.recorded(committed);
+        });
+        transactions.executeWithoutResult(status -> {
+            insert(rolledBack, Instant.now());
+            guard.recorded(rolledBack);
+            status.setRollbackOnly();
+        });
+
+        double recent = checks("recent");
+        assertThat(guard.isProcessed(committed)).isTrue();
+        assertThat(checks("recent")).isEqualTo(recent + 1);
+        assertThat(guard.isProcessed(rolledBack)).isFalse();
+    }
+
+    @Test
+    void newIdsAreRuledOutByTheFilterWithoutARead() {
+        guard.maintain();
+
+        double filter = checks("filter");
+        double table = checks("table");
+        int ids = 20;
+        for (int i = 0; i < ids; i++) {
+            assertThat(guard.isProcessed(UUID.randomUUID().toString())).isFalse();
+        }
+        // At a 1% false-positive rate nearly every check ends at the filter.
+        assertThat(checks("filter") - filter).isGreaterThanOrEqualTo(ids - 3);
+        assertThat(checks("filter") - filter + checks("table") - table).isEqualTo(ids);
+    }
+
+    @Test
+    void anIdTheFilterCannotRuleOutIsReadFromTheTable() {
+        String otherInstance = UUID.randomUUID().toString();
+        insert(otherInstance, Instant.now());
+        guard.maintain();
+
+        double table = checks("table");
+        assertThat(guard.isProcessed(otherInstance)).isTrue();
+        assertThat(checks("table")).isEqualTo(table + 1);
+    }
+
+    @Test
+    void maintenancePrunesOnlyExpiredIds() {
+        String expired = UUID.randomUUID().toString();
+        String kept = UUID.randomUUID().toString();
+        insert(expired, Instant.now().minus(Duration.ofDays(15)));
+        insert(kept, Instant.now().minus(Duration.ofDays(13)));
+
+        guard.maintain();
+
+        assertThat(jdbc.queryForList("select transfer_id from processed_events", String.class))
+                .containsExactly(kept);
+    }
+
+    @Test
+    void aTransferAnotherInstanceProcessedAfterTheFilterWasBuiltIsSkipped() {
+        guard.maintain();
+        Account source = seedAccount("1", new BigDecimal("100.00"));
+        Account destination = seedAccount("2", BigDecimal.ZERO);
+        TransferRequested command = new TransferRequested(UUID.randomUUID().toString(), OWNER, source.getId(),
+                destination.getId(), new BigDecimal("30.00"), "USD", Instant.now());
+        // Recorded by another instance: this one's filter has never heard of it.
+        insert(command.transferId(), Instant.now());
+
+        transferService.apply(command);
+
+        assertThat(balanceOf(source)).isEqualByComparingTo("100.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("0.00");
+        assertThat(jdbc.queryForObject("select count(*) from outbox", Integer.class)).isZero();
+    }
+
+    private void insert(String transferId, Instant processedAt) {
+        jdbc.update("insert into processed_events (transfer_id, processed_at) values (?, ?)",
+                transferId, OffsetDateTime.ofInstant(processedAt, ZoneOffset.UTC));
+    }
+
+    private double checks(String answeredBy) {
+        return meterRegistry.counter("vbank.idempotency.checks", "answered.by", answeredBy).count();
+    }
+
+    private Account seedAccount(String accountNumber, BigDecimal balance) {
+        Instant now = Instant.now();
+        return accounts.save(new Account(UUID.randomUUID().toString(), OWNER, accountNumber, AccountType.CHECKING,
+                balance, "USD", AccountStatus.ACTIVE, now, now));
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountService.getOwned(account.getId(), account.getOwnerId()).getBalance();
+    }
+}
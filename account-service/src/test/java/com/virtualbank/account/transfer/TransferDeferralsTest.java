@@ -0,0 +1,203 @@
+package com.virtualbank.account.transfer;
+
+import com.virtualbank.account.AccountService;
+import com.virtualbank.account.domain.Account;
+import com.virtualbank.account.domain.AccountRepository;
+import com.virtualbank.account.domain.AccountStatus;
+import com.virtualbank.account.domain.AccountType;
+import com.virtualbank.common.event.TransferRequested;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves the deferral mode: commands behind a locked account are parked without
+ * holding up the others and applied in arrival order once the lock is gone, and
+ * a parked command that keeps failing for another reason is given up on after
+ * the configured number of redrives instead of holding its accounts forever.
+ * The test redrives itself, with no backoff between failures.
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration",
+        "vbank.transfer.contention.mode=defer",
+        "vbank.transfer.contention.redrive-ms=3600000",
+        "vbank.transfer.contention.max-redrive-failures=3",
+        "vbank.transfer.contention.failure-backoff-ms=0"})
+@Testcontainers
+class TransferDeferralsTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final String OWNER = "owner-1";
+    private static final AtomicLong ACCOUNT_NUMBERS = new AtomicLong();
+
+    @Autowired
+    private TransferDeferrals deferrals;
+
+    @Autowired
+    private AccountRepository accounts;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clean() {
+        deferrals.clear();
+        jdbc.update("delete from outbox");
+        jdbc.update("delete from processed_events");
+        jdbc.update("delete from account_entries");
+        accounts.deleteAll();
+    }
+
+    @Test
+    void commandsBehindALockedAccountWaitAndKeepTheirOrder() throws Exception {
+        Account busy = seedAccount(new BigDecimal("100.00"));
+        Account middle = seedAccount(BigDecimal.ZERO);
+        Account last = seedAccount(BigDecimal.ZERO);
+        Account elsewhere = seedAccount(new BigDecimal("50.00"));
+        Account elsewhereToo = seedAccount(BigDecimal.ZERO);
+
+        try (RowLock lock = lock(busy)) {
+            // The second command can only be funded by the first, so it must not run before it.
+            TransferRequested first = command(busy, middle, new BigDecimal("10.00"));
+            TransferRequested second = command(middle, last, new BigDecimal("5.00"));
+            TransferRequested unrelated = command(elsewhere, elsewhereToo, new BigDecimal("20.00"));
+            List<String> applied = new CopyOnWriteArrayList<>();
+            for (TransferRequested command : List.of(first, second, unrelated)) {
+                deferrals.submit(command, () -> applied.add(command.transferId()), failure -> {
+                    throw new AssertionError("Abandoned " + command.transferId(), failure);
+                });
+            }
+
+            assertThat(applied).containsExactly(unrelated.transferId());
+            assertThat(balanceOf(busy)).isEqualByComparingTo("100.00");
+            assertThat(balanceOf(middle)).isEqualByComparingTo("0.00");
+            assertThat(balanceOf(elsewhereToo)).isEqualByComparingTo("20.00");
+
+            deferrals.redrive();
+            assertThat(applied).containsExactly(unrelated.transferId());
+
+            lock.release();
+            deferrals.redrive();
+
+            assertThat(applied).containsExactly(unrelated.transferId(), first.transferId(), second.transferId());
+            assertThat(balanceOf(busy)).isEqualByComparingTo("90.00");
+            assertThat(balanceOf(middle)).isEqualByComparingTo("5.00");
+            assertThat(balanceOf(last)).isEqualByComparingTo("5.00");
+        }
+    }
+
+    @Test
+    void aParkedCommandThatKeepsFailingIsAbandonedAndFreesItsAccounts() throws Exception {
+        Account source = seedAccount(new BigDecimal("100.00"));
+        Account destination = seedAccount(BigDecimal.ZERO);
+
+        // Parked behind the lock first, then failing on every redrive: the transferId
+        // is too long for processed_events, so the insert is refused.
+        TransferRequested broken = new TransferRequested("x".repeat(80), OWNER, source.getId(),
+                destination.getId(), new BigDecimal("10.00"), "USD", Instant.now());
+        TransferRequested behind = command(source, destination, new BigDecimal("5.00"));
+        List<String> applied = new CopyOnWriteArrayList<>();
+        List<RuntimeException> abandoned = new CopyOnWriteArrayList<>();
+        try (RowLock lock = lock(source)) {
+            deferrals.submit(broken, () -> applied.add(broken.transferId()), abandoned::add);
+            deferrals.submit(behind, () -> applied.add(behind.transferId()), abandoned::add);
+            lock.release();
+        }
+
+        deferrals.redrive();
+        deferrals.redrive();
+        assertThat(abandoned).isEmpty();
+        assertThat(applied).isEmpty();
+
+        // The third failure gives up on it; the command behind goes on the next redrive.
+        deferrals.redrive();
+        assertThat(abandoned).hasSize(1);
+        deferrals.redrive();
+
+        assertThat(applied).containsExactly(behind.transferId());
+        assertThat(balanceOf(source)).isEqualByComparingTo("95.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("5.00");
+    }
+
+    /** Holds a row lock on an account from another thread until released or closed. */
+    private RowLock lock(Account account) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbc.queryForList("select id from accounts where id = ? for update", String.class, account.getId());
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+        return new RowLock(holder, release);
+    }
+
+    private record RowLock(Thread holder, CountDownLatch latch) implements AutoCloseable {
+
+        void release() throws InterruptedException {
+            latch.countDown();
+            holder.join();
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            release();
+        }
+    }
+
+    private Account seedAccount(BigDecimal balance) {
+        Instant now = Instant.now();
+        return accounts.save(new Account(UUID.randomUUID().toString(), OWNER,
+                Long.toString(ACCOUNT_NUMBERS.incrementAndGet()), AccountType.CHECKING, balance, "USD",
+                AccountStatus.ACTIVE, now, now));
+    }
+
+    private static TransferRequested command(Account from, Account to, BigDecimal amount) {
+        return new TransferRequested(UUID.randomUUID().toString(), OWNER, from.getId(), to.getId(), amount, "USD",
+                Instant.now());
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountService.getOwned(account.getId(), account.getOwnerId()).getBalance();
+    }
+}
@@ -2,10 +2,12 @@ package com.virtualbank.account.transfer;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.virtualbank.account.AccountService;
 import com.virtualbank.account.domain.Account;
 import com.virtualbank.account.domain.AccountRepository;
 import com.virtualbank.account.domain.AccountStatus;
 import com.virtualbank.account.domain.AccountType;
+import com.virtualbank.account.hot.HotAccounts;
 import com.virtualbank.common.event.TransferRequested;
 import com.virtualbank.common.messaging.Topics;
 import com.virtualbank.common.outbox.OutboxEntry;
@@ -14,6 +16,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -23,6 +26,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -56,23 +60,35 @@ class TransferServiceTest {
     }
 
     @Autowired
-    private TransferService transferService;
+    TransferService transferService;
 
     @Autowired
     private AccountRepository accounts;
 
+    @Autowired
+    private AccountService accountService;
+
     @Autowired
     private OutboxRepository outbox;
 
     @Autowired
     private ObjectMapper objectMapper;
 
-    private static final String OWNER = "owner-1";
+    @Autowired
+    private HotAccounts hotAccounts;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    static final String OWNER = "owner-1";
     private static final AtomicLong ACCOUNT_NUMBERS = new AtomicLong();
 
     @BeforeEach
     void clean() {
         outbox.deleteAll();
+        jdbc.update("delete from processed_events");
+        jdbc.update("delete from account_entries");
+        jdbc.update("delete from account_balance_snapshots");
         accounts.deleteAll();
     }
 
@@ -92,6 +108,24 @@ class TransferServiceTest {
         assertThat(events.getFirst().getType()).isEqualTo("TransferCompleted");
     }
 
+    @Test
+    void transferIsJournaledAsOneDebitAndOneCredit() {
+        Account source = seedAccount(OWNER, new BigDecimal("100.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("0.00"));
+
+        TransferRequested command = command(source, destination, new BigDecimal("30.00"));
+        transferService.apply(command);
+
+        List<Map<String, Object>> entries = jdbc.queryForList(
+                "select account_id, kind, amount from account_entries where transfer_id = ? order by amount",
+                command.transferId());
+        assertThat(entries).hasSize(2);
+        assertThat(entries.get(0)).containsEntry("account_id", source.getId()).containsEntry("kind", "DEBIT");
+        assertThat((BigDecimal) entries.get(0).get("amount")).isEqualByComparingTo("-30.00");
+        assertThat(entries.get(1)).containsEntry("account_id", destination.getId()).containsEntry("kind", "CREDIT");
+        assertThat((BigDecimal) entries.get(1).get("amount")).isEqualByComparingTo("30.00");
+    }
+
     @Test
     void insufficientFundsFailsWithoutMovingMoney() {
         Account source = seedAccount(OWNER, new BigDecimal("10.00"));
@@ -176,7 +210,110 @@ class TransferServiceTest {
         assertThat(insufficient).isEqualTo(10);
     }
 
-    private Account seedAccount(String ownerId, BigDecimal balance) {
+    @Test
+    void batchAppliesCommandsInOrderOnceEach() {
+        Account source = seedAccount(OWNER, new BigDecimal("50.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("0.00"));
+
+        TransferRequested first = command(source, destination, new BigDecimal("30.00"));
+        TransferRequested second = command(source, destination, new BigDecimal("30.00"));
+        TransferRequested third = command(source, destination, new BigDecimal("20.00"));
+        transferService.apply(first);
+
+        // first was already applied and third repeats in the batch: each moves money once,
+        // and second sees the balance first left behind.
+        transferService.applyBatch(List.of(first, second, third, third));
+
+        assertThat(balanceOf(source)).isEqualByComparingTo("0.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("50.00");
+        assertThat(outbox.findAll()).hasSize(3);
+        assertThat(outbox.findById(second.transferId()).map(this::reasonOf)).contains("INSUFFICIENT_FUNDS");
+        assertThat(outbox.findById(third.transferId()).map(OutboxEntry::getType)).contains("TransferCompleted");
+        // The relay publishes in (created_at, id) order, which must be the order the outcomes were appended.
+        assertThat(jdbc.queryForList("select id from outbox order by created_at, id", String.class))
+                .containsExactly(first.transferId(), second.transferId(), third.transferId());
+    }
+
+    @Test
+    void hotAccountSplitsItsBalanceAndNeverOverdraws() throws InterruptedException {
+        Account source = seedAccount(OWNER, new BigDecimal("100.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("0.00"));
+        assertThat(hotAccounts.promote(source.getId(), 4)).isTrue();
+        assertThat(balanceOf(source)).isEqualByComparingTo("100.00");
+
+        // Twenty concurrent 7.00 debits against 100.00 in four buckets: fourteen fit,
+        // some of them only by sweeping several buckets, and none may overdraw.
+        int transfers = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(transfers);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(transfers);
+        for (int i = 0; i < transfers; i++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    transferService.apply(command(source, destination, new BigDecimal("7.00")));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        assertThat(balanceOf(source)).isEqualByComparingTo("2.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("98.00");
+        assertThat(outbox.findAll()).filteredOn(entry -> "TransferCompleted".equals(entry.getType())).hasSize(14);
+    }
+
+    @Test
+    void aStaleInstanceStillCreditsAHotAccountsBuckets() {
+        Account source = seedAccount(OWNER, new BigDecimal("50.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("0.00"));
+        promoteBehindTheCache(destination, 2);
+
+        transferService.apply(command(source, destination, new BigDecimal("20.00")));
+
+        assertThat(rowBalanceOf(destination)).isEqualByComparingTo("0.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("20.00");
+        assertThat(balanceOf(source)).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void moneyLeftInAHotAccountsRowIsSpentOnceItsBucketsRunShort() {
+        Account source = seedAccount(OWNER, new BigDecimal("5.00"));
+        Account destination = seedAccount(OWNER, new BigDecimal("0.00"));
+        assertThat(hotAccounts.promote(source.getId(), 2)).isTrue();
+        // A credit that reached the row, as a deposit racing the promotion does.
+        jdbc.update("update accounts set balance = 10.00 where id = ?", source.getId());
+        assertThat(balanceOf(source)).isEqualByComparingTo("15.00");
+
+        transferService.apply(command(source, destination, new BigDecimal("12.00")));
+
+        assertThat(balanceOf(source)).isEqualByComparingTo("3.00");
+        assertThat(rowBalanceOf(source)).isEqualByComparingTo("3.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("12.00");
+        assertThat(outbox.findAll()).extracting(OutboxEntry::getType).containsExactly("TransferCompleted");
+    }
+
+    @Test
+    void aFrozenHotAccountsBucketsOnlyMoveToUndoATransfer() {
+        Account account = seedAccount(OWNER, new BigDecimal("40.00"));
+        assertThat(hotAccounts.promote(account.getId(), 2)).isTrue();
+        // Frozen after a transfer read it active.
+        jdbc.update("update accounts set status = 'FROZEN' where id = ?", account.getId());
+
+        assertThat(hotAccounts.debit(account.getId(), new BigDecimal("5.00"))).isFalse();
+        assertThat(hotAccounts.credit(account.getId(), 2, new BigDecimal("5.00"))).isFalse();
+        assertThat(balanceOf(account)).isEqualByComparingTo("40.00");
+
+        assertThat(hotAccounts.adjust(account.getId(), 2, new BigDecimal("-5.00"))).isTrue();
+        assertThat(balanceOf(account)).isEqualByComparingTo("35.00");
+    }
+
+    Account seedAccount(String ownerId, BigDecimal balance) {
         Instant now = Instant.now();
         Account account = new Account(
                 UUID.randomUUID().toString(),
@@ -191,7 +328,7 @@ class TransferServiceTest {
         return accounts.save(account);
     }
 
-    private TransferRequested command(Account from, Account to, BigDecimal amount) {
+    TransferRequested command(Account from, Account to, BigDecimal amount) {
         return new TransferRequested(
                 UUID.randomUUID().toString(),
                 OWNER,
@@ -202,8 +339,21 @@ class TransferServiceTest {
                 Instant.now());
     }
 
-    private BigDecimal balanceOf(Account account) {
-        return accounts.findById(account.getId()).orElseThrow().getBalance();
+    BigDecimal balanceOf(Account account) {
+        return accountService.getOwned(account.getId(), account.getOwnerId()).getBalance();
+    }
+
+    BigDecimal rowBalanceOf(Account account) {
+        return jdbc.queryForObject("select balance from accounts where id = ?", BigDecimal.class, account.getId());
+    }
+
+    /** Makes the account hot the way another instance would, so this one's cache has not seen it. */
+    private void promoteBehindTheCache(Account account, int buckets) {
+        jdbc.update("update accounts set bucket_count = ? where id = ?", buckets, account.getId());
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            jdbc.update("insert into account_balance_buckets (account_id, bucket, balance) values (?, ?, 0)",
+                    account.getId(), bucket);
+        }
     }
 
     private void assertFailedWith(String reason) {
@@ -9,6 +9,7 @@ import type {
   RegisterRequest,
   Transfer,
   TransferAccepted,
+  TransferPage,
   TransferRequest,
   UserProfile,
 } from './types';
@@ -34,8 +35,16 @@ export const accounts = {
 };
 
 export const transfers = {
-  list: () => api.get<Transfer[]>('/transfers').then((r) => r.data),
-  get: (id: string) => api.get<Transfer>(`/transfers/${id}`).then((r) => r.data),
+  // Newest first, a page at a time; pass the previous page's nextCursor.
+  list: (cursor?: string) =>
+    api
+      .get<TransferPage>('/transfers', { params: cursor ? { cursor } : undefined })
+      .then((r) => r.data),
+  // With waitMs the request is held until the transfer settles or the wait ends.
+  get: (id: string, waitMs?: number) =>
+    api
+      .get<Transfer>(`/transfers/${id}`, { params: waitMs ? { waitMs } : undefined })
+      .then((r) => r.data),
   // A fresh Idempotency-Key per submission makes a retried POST resolve to the
   // same transfer instead of moving money twice.
   create: (body: TransferRequest, idempotencyKey: string) =>
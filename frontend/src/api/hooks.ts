@@ -1,4 +1,4 @@
-import { useMutation, useQuery, useQueryClient } from '@tanstack/react-query';
+import { useInfiniteQuery, useMutation, useQuery, useQueryClient } from '@tanstack/react-query';
 import { accounts, transfers, users } from './endpoints';
 import type { CreateAccountRequest } from './types';
 
@@ -19,7 +19,12 @@ export function useAccounts() {
 }
 
 export function useTransfers() {
-  return useQuery({ queryKey: queryKeys.transfers, queryFn: transfers.list });
+  return useInfiniteQuery({
+    queryKey: queryKeys.transfers,
+    queryFn: ({ pageParam }) => transfers.list(pageParam),
+    initialPageParam: undefined as string | undefined,
+    getNextPageParam: (lastPage) => lastPage.nextCursor ?? undefined,
+  });
 }
 
 export function useCreateAccount() {
@@ -69,6 +69,7 @@ export interface TransferAccepted {
   transferId: string;
   status: TransferStatus;
   statusUrl: string;
+  eventsUrl: string;
 }
 
 export interface Transfer {
@@ -83,6 +84,11 @@ export interface Transfer {
   updatedAt: string;
 }
 
+export interface TransferPage {
+  items: Transfer[];
+  nextCursor: string | null;
+}
+
 export interface AuditEntry {
   eventType: AuditEventType;
   amount: string | number | null;
@@ -1,4 +1,5 @@
-import { useQuery } from '@tanstack/react-query';
+import { useEffect, useRef } from 'react';
+import { useQuery, useQueryClient } from '@tanstack/react-query';
 import { audit, transfers } from '../api/endpoints';
 import { errorMessage } from '../api/client';
 import { queryKeys } from '../api/hooks';
@@ -9,22 +10,51 @@ import { formatDate, formatMoney } from '../lib/format';
 const isTerminal = (status: Transfer['status']) =>
   status === 'COMPLETED' || status === 'FAILED';
 
+const LONG_POLL_MS = 20000;
+// A pending answer quicker than this was not held by the server.
+const MIN_HELD_MS = LONG_POLL_MS / 2;
+// How soon to read again after an early answer or a failed read.
+const FALLBACK_POLL_MS = 3000;
+
 /**
- * Follows a single transfer to its outcome. While the transfer is PENDING it
- * polls every second; once it settles the polling stops and the audit history
- * is shown.
+ * Follows a single transfer to its outcome. The first read returns at once;
+ * while the transfer is PENDING each following read is a long poll the server
+ * answers as soon as it settles. Once it settles the polling stops and the
+ * audit history is shown.
+ *
+ * The next long poll is only chained straight away after the first read or a
+ * poll the server actually held. A pending answer that comes back early (a
+ * server that ignores waitMs) or a failed read falls back to reading every
+ * FALLBACK_POLL_MS instead of asking again at once.
  */
 export function TransferProgress({ transferId }: { transferId: string }) {
+  const queryClient = useQueryClient();
+  const chainNext = useRef(false);
   const transfer = useQuery({
     queryKey: queryKeys.transfer(transferId),
-    queryFn: () => transfers.get(transferId),
+    queryFn: async () => {
+      const longPoll = queryClient.getQueryData(queryKeys.transfer(transferId)) !== undefined;
+      const started = Date.now();
+      chainNext.current = false;
+      const read = await transfers.get(transferId, longPoll ? LONG_POLL_MS : undefined);
+      chainNext.current = !longPoll || Date.now() - started >= MIN_HELD_MS;
+      return read;
+    },
     refetchInterval: (query) => {
       const status = query.state.data?.status;
-      return status && isTerminal(status) ? false : 1000;
+      return status && isTerminal(status) ? false : FALLBACK_POLL_MS;
     },
   });
 
-  const settled = transfer.data ? isTerminal(transfer.data.status) : false;
+  const { data, dataUpdatedAt, refetch } = transfer;
+  useEffect(() => {
+    if (data && !isTerminal(data.status) && chainNext.current) {
+      chainNext.current = false;
+      void refetch({ cancelRefetch: false });
+    }
+  }, [data, dataUpdatedAt, refetch]);
+
+  const settled = data ? isTerminal(data.status) : false;
 
   const history = useQuery({
     queryKey: queryKeys.audit(transferId),
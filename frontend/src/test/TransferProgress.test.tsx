@@ -0,0 +1,69 @@
+import { afterEach, describe, expect, it, vi } from 'vitest';
+import { render, screen, waitFor } from '@testing-library/react';
+import { QueryClient, QueryClientProvider } from '@tanstack/react-query';
+import { TransferProgress } from '../components/TransferProgress';
+import { audit, transfers } from '../api/endpoints';
+import type { Transfer } from '../api/types';
+
+vi.mock('../api/endpoints', async (importOriginal) => ({
+  ...(await importOriginal<typeof import('../api/endpoints')>()),
+  transfers: { get: vi.fn() },
+  audit: { forTransfer: vi.fn() },
+}));
+
+const pending: Transfer = {
+  transferId: 'tr-1',
+  fromAccountId: 'acc-from',
+  toAccountId: 'acc-to',
+  amount: '25.00',
+  currency: 'USD',
+  status: 'PENDING',
+  failureReason: null,
+  createdAt: '2024-01-01T00:00:00Z',
+  updatedAt: '2024-01-01T00:00:00Z',
+};
+
+function renderProgress() {
+  const client = new QueryClient({ defaultOptions: { queries: { retry: false } } });
+  return render(
+    <QueryClientProvider client={client}>
+      <TransferProgress transferId="tr-1" />
+    </QueryClientProvider>,
+  );
+}
+
+describe('TransferProgress', () => {
+  afterEach(() => {
+    vi.clearAllMocks();
+  });
+
+  it('follows the first read with a long poll', async () => {
+    vi.mocked(transfers.get).mockResolvedValue(pending);
+    renderProgress();
+
+    await waitFor(() => expect(transfers.get).toHaveBeenCalledTimes(2));
+    expect(transfers.get).toHaveBeenNthCalledWith(1, 'tr-1', undefined);
+    expect(transfers.get).toHaveBeenNthCalledWith(2, 'tr-1', 20000);
+  });
+
+  it('does not ask again at once when a long poll comes back early', async () => {
+    // A server that ignores waitMs answers every read straight away.
+    vi.mocked(transfers.get).mockResolvedValue(pending);
+    renderProgress();
+
+    await waitFor(() => expect(transfers.get).toHaveBeenCalledTimes(2));
+    await new Promise((resolve) => setTimeout(resolve, 300));
+    expect(transfers.get).toHaveBeenCalledTimes(2);
+  });
+
+  it('stops polling and shows the history once the transfer settles', async () => {
+    vi.mocked(transfers.get)
+      .mockResolvedValueOnce(pending)
+      .mockResolvedValue({ ...pending, status: 'COMPLETED' });
+    vi.mocked(audit.forTransfer).mockResolvedValue([]);
+    renderProgress();
+
+    expect(await screen.findByText('No history recorded.')).toBeInTheDocument();
+    expect(transfers.get).toHaveBeenCalledTimes(2);
+  });
+});
@@ -0,0 +1,43 @@
+package com.virtualbank.transaction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The transferIds of the most recently accepted idempotency keys on this
+ * instance, up to {@code vbank.transfers.idempotency-keys.cache-size}. A client
+ * retrying a POST it did not see the answer to usually retries promptly and
+ * often several times, and each retry found here goes straight to its transfer
+ * by primary key instead of through a conflicting insert. Only committed
+ * transfers are put here, and a hit is still read from the table, so an entry
+ * for a deleted transfer is just a miss.
+ */
+@Component
+class IdempotencyKeyCache {
+
+    private final Map<String, String> transferIds;
+
+    IdempotencyKeyCache(@Value("${vbank.transfers.idempotency-keys.cache-size:10000}") int cacheSize) {
+        this.transferIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    synchronized String get(String idempotencyKey) {
+        return transferIds.get(idempotencyKey);
+    }
+
+    synchronized void put(String idempotencyKey, String transferId) {
+        transferIds.put(idempotencyKey, transferId);
+    }
+
+    synchronized void evict(String idempotencyKey) {
+        transferIds.remove(idempotencyKey);
+    }
+}
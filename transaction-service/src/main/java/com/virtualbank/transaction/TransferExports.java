@@ -0,0 +1,151 @@
+package com.virtualbank.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.virtualbank.common.web.ApiException;
+import com.virtualbank.transaction.web.dto.TransferFilter;
+import com.virtualbank.transaction.web.dto.TransferView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Full transfer histories for download, as NDJSON or CSV. An export is written
+ * row by row from {@link TransferHistory#stream} into the response, so it holds
+ * one fetch of rows in memory however long the history is. It runs after the
+ * request thread returns, on the MVC async executor, which is a virtual thread
+ * per task since {@code spring.threads.virtual.enabled} is set.
+ *
+ * <p>Each running export holds a pooled connection from its first row to its
+ * last, so at most {@code vbank.transfers.export.max-concurrent} run at once and
+ * the rest of the pool stays free for transfers. One asked for beyond that is
+ * refused with 429 rather than queued.
+ *
+ * <p>The connection also holds one read-only transaction, and its snapshot keeps
+ * vacuum from removing rows deleted after it began. An export therefore gets
+ * {@code vbank.transfers.export.timeout-ms} to finish: the request times out
+ * then, and the export stops reading at the next row, which ends the
+ * transaction even when the client is still there. The download is cut short
+ * rather than the snapshot kept open.
+ */
+@Component
+public class TransferExports {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransferHistory history;
+    private final ObjectMapper objectMapper;
+    private final Semaphore running;
+    private final Duration timeout;
+
+    public TransferExports(TransferHistory history, ObjectMapper objectMapper,
+                           @Value("${vbank.transfers.export.max-concurrent:2}") int maxConcurrent,
+                           @Value("${vbank.transfers.export.timeout-ms:600000}") long timeoutMs) {
+        this.history = history;
+        this.objectMapper = objectMapper;
+        this.running = new Semaphore(maxConcurrent);
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    /** How long one export may run, for the request's async timeout. */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw ApiException.badRequest("Unsupported export format: " + name);
+            }
+        }
+    }
+
+    /**
+     * Reserves a slot and returns the body that writes the export, releasing the
+     * slot once it is written or fails.
+     */
+    public StreamingResponseBody export(String initiatorId, TransferFilter filter, Format format) {
+        if (!running.tryAcquire()) {
+            throw ApiException.tooManyRequests("Too many exports are running, try again shortly");
+        }
+        return out -> {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                if (format == Format.CSV) {
+                    writer.write("transferId,fromAccountId,toAccountId,amount,currency,status,failureReason,"
+                            + "createdAt,updatedAt\n");
+                }
+                history.stream(initiatorId, filter, view -> {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new UncheckedIOException(new IOException("Export ran past " + timeout));
+                    }
+                    write(writer, format, view);
+                });
+                writer.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                running.release();
+            }
+        };
+    }
+
+    private void write(Writer writer, Format format, TransferView view) {
+        try {
+            if (format == Format.CSV) {
+                writer.write(String.join(",",
+                        csv(view.transferId()), csv(view.fromAccountId()), csv(view.toAccountId()),
+                        view.amount().toPlainString(), csv(view.currency()), csv(view.status()),
+                        csv(view.failureReason()), view.createdAt().toString(), view.updatedAt().toString()));
+            } else {
+                writer.write(objectMapper.writeValueAsString(view));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            // The client went away; abandon the cursor rather than read the rest.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,171 @@
+package com.virtualbank.transaction;
+
+import com.virtualbank.common.web.ApiException;
+import com.virtualbank.transaction.web.dto.TransferFilter;
+import com.virtualbank.transaction.web.dto.TransferPage;
+import com.virtualbank.transaction.web.dto.TransferView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An initiator's transfer history, a page at a time, newest first. Pages are cut
+ * by keyset on {@code (created_at, id)}: the cursor is the last row of the
+ * previous page, and the next page is read from {@code idx_transfers_initiator}
+ * starting right after it, so a page costs the same however deep into the
+ * history it is. Rows are read straight into {@link TransferView}s, without
+ * loading entities into the persistence context.
+ *
+ * <p>Filters narrow the rows walked in the index rather than where the walk
+ * starts, so a selective filter reads further per page. Pages are at most
+ * {@code vbank.transfers.history.max-page-size} rows. Exports read the same rows
+ * in one pass through {@link #stream}.
+ */
+@Component
+public class TransferHistory {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final RowMapper<TransferView> VIEW = (rs, rowNum) -> new TransferView(
+            rs.getString("id"),
+            rs.getString("from_account_id"),
+            rs.getString("to_account_id"),
+            rs.getBigDecimal("amount"),
+            rs.getString("currency"),
+            rs.getString("status"),
+            rs.getString("failure_reason"),
+            rs.getObject("created_at", OffsetDateTime.class).toInstant(),
+            rs.getObject("updated_at", OffsetDateTime.class).toInstant());
+
+    private final JdbcTemplate jdbc;
+    private final int maxPageSize;
+
+    public TransferHistory(JdbcTemplate jdbc,
+                           @Value("${vbank.transfers.history.max-page-size:200}") int maxPageSize) {
+        this.jdbc = jdbc;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /** The page after {@code cursor}, or the first page when it is null. */
+    @Transactional(readOnly = true)
+    public TransferPage page(String initiatorId, TransferFilter filter, String cursor, int pageSize) {
+        int limit = Math.clamp(pageSize, 1, maxPageSize);
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = select(initiatorId, filter, args);
+        if (cursor != null) {
+            Position after = Position.decode(cursor);
+            sql.append("and (created_at, id) < (?, ?)\n");
+            args.add(utc(after.createdAt()));
+            args.add(after.id());
+        }
+        // One row past the page says whether there is a next one.
+        sql.append("order by created_at desc, id desc limit ?");
+        args.add(limit + 1);
+
+        List<TransferView> rows = jdbc.query(sql.toString(), VIEW, args.toArray());
+        if (rows.size() <= limit) {
+            return new TransferPage(rows, null);
+        }
+        List<TransferView> items = rows.subList(0, limit);
+        TransferView last = items.getLast();
+        return new TransferPage(List.copyOf(items), new Position(last.createdAt(), last.transferId()).encode());
+    }
+
+    /**
+     * Every matching transfer, oldest first, handed to {@code sink} as it is read.
+     * The rows come through a server-side cursor {@link #STREAM_FETCH_SIZE} at a
+     * time, which Postgres only keeps open inside a transaction, so memory stays
+     * flat however many there are. The transaction lasts until {@code sink} has
+     * taken the last row, so a caller that streams to a client bounds how long
+     * that may take (see {@link TransferExports}).
+     */
+    @Transactional(readOnly = true)
+    public void stream(String initiatorId, TransferFilter filter, Consumer<TransferView> sink) {
+        List<Object> args = new ArrayList<>();
+        String sql = select(initiatorId, filter, args).append("order by created_at, id").toString();
+        jdbc.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> sink.accept(VIEW.mapRow(rs, rs.getRow())));
+    }
+
+    private static StringBuilder select(String initiatorId, TransferFilter filter, List<Object> args) {
+        StringBuilder sql = new StringBuilder("""
+                select id, from_account_id, to_account_id, amount, currency, status, failure_reason,
+                       created_at, updated_at
+                from transfers
+                where initiator_id = ?
+                """);
+        args.add(initiatorId);
+        if (filter.status() != null) {
+            sql.append("and status = ?\n");
+            args.add(filter.status().name());
+        }
+        if (filter.accountId() != null) {
+            sql.append("and (from_account_id = ? or to_account_id = ?)\n");
+            args.add(filter.accountId());
+            args.add(filter.accountId());
+        }
+        if (filter.from() != null) {
+            sql.append("and created_at >= ?\n");
+            args.add(utc(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append("and created_at < ?\n");
+            args.add(utc(filter.to()));
+        }
+        if (filter.minAmount() != null) {
+            sql.append("and amount >= ?\n");
+            args.add(filter.minAmount());
+        }
+        if (filter.maxAmount() != null) {
+            sql.append("and amount <= ?\n");
+            args.add(filter.maxAmount());
+        }
+        return sql;
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    /** The last row of a page, as an opaque cursor. */
+    private record Position(Instant createdAt, String id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int comma = decoded.indexOf(',');
+                if (comma < 0) {
+                    throw ApiException.badRequest("Invalid cursor");
+                }
+                return new Position(Instant.parse(decoded.substring(0, comma)), decoded.substring(comma + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw ApiException.badRequest("Invalid cursor");
+            }
+        }
+    }
+}
@@ -1,30 +1,40 @@
 package com.virtualbank.transaction;
 
 import com.virtualbank.common.event.TransferRequested;
+import com.virtualbank.common.idempotency.IdempotencyGuard;
 import com.virtualbank.common.messaging.Topics;
 import com.virtualbank.common.outbox.OutboxAppender;
 import com.virtualbank.common.web.ApiException;
-import com.virtualbank.transaction.domain.ProcessedEvent;
-import com.virtualbank.transaction.domain.ProcessedEventRepository;
 import com.virtualbank.transaction.domain.Transfer;
 import com.virtualbank.transaction.domain.TransferRepository;
 import com.virtualbank.transaction.web.dto.TransferRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.Instant;
-import java.util.List;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.UUID;
 
 /**
  * Owns the transfer ledger and orchestrates each transfer. Starting a transfer
  * writes a PENDING row and appends a TransferRequested command in one
  * transaction, so the command is never published without the ledger row
- * committing. Applying an outcome records it once and advances the same row.
+ * committing. The row is inserted first, the insert itself checking the
+ * idempotency key, so only a retry reads. Applying an outcome records it once
+ * and advances the same row; the {@link IdempotencyGuard} answers most "seen
+ * it?" checks without a read, and an outcome another instance recorded since is
+ * caught by the processed_events insert, which skips an id already there. A
+ * settled transfer is announced as a {@link TransferSettled} event, which the
+ * status streams push to waiting clients once the transaction commits.
  */
 @Service
 public class TransferService {
@@ -32,22 +42,29 @@ public class TransferService {
     private static final Logger log = LoggerFactory.getLogger(TransferService.class);
 
     private final TransferRepository transfers;
-    private final ProcessedEventRepository processedEvents;
+    private final IdempotencyGuard idempotency;
     private final OutboxAppender outbox;
+    private final ApplicationEventPublisher events;
+    private final JdbcTemplate jdbc;
+    private final IdempotencyKeyCache recentKeys;
     private final Clock clock;
 
-    public TransferService(TransferRepository transfers, ProcessedEventRepository processedEvents,
-                           OutboxAppender outbox, Clock clock) {
+    public TransferService(TransferRepository transfers, IdempotencyGuard idempotency, OutboxAppender outbox, ApplicationEventPublisher events,
+                           JdbcTemplate jdbc, IdempotencyKeyCache recentKeys, Clock clock) {
         this.transfers = transfers;
-        this.processedEvents = processedEvents;
+        this.idempotency = idempotency;
         this.outbox = outbox;
+        this.events = events;
+        this.jdbc = jdbc;
+        this.recentKeys = recentKeys;
         this.clock = clock;
     }
 
     /**
      * Starts a transfer for the authenticated initiator. The idempotency key makes
      * a retried request return the original transfer rather than create a second
-     * one. Ownership of the source account is enforced downstream by
+     * one, and reusing it for a different transfer is a 409. A new key costs one
+     * insert and no read. Ownership of the source account is enforced downstream by
      * account-service, which checks the initiatorId, so no synchronous call is made
      * from here.
      */
@@ -60,23 +77,69 @@ public class TransferService {
             throw ApiException.badRequest("Source and destination accounts must differ");
         }
 
-        return transfers.findByIdempotencyKey(idempotencyKey)
-                .orElseGet(() -> create(initiatorId, idempotencyKey, request));
-    }
+        String cachedId = recentKeys.get(idempotencyKey);
+        if (cachedId != null) {
+            Transfer cached = transfers.findById(cachedId).orElse(null);
+            if (cached != null) {
+                return sameRequest(cached, initiatorId, request);
+            }
+            recentKeys.evict(idempotencyKey);
+        }
 
-    private Transfer create(String initiatorId, String idempotencyKey, TransferRequest request) {
         Instant now = Instant.now(clock);
         String transferId = UUID.randomUUID().toString();
         Transfer transfer = new Transfer(transferId, initiatorId, request.fromAccountId(),
                 request.toAccountId(), request.amount(), request.currency(), idempotencyKey, now);
-        transfers.save(transfer);
+        if (!insertIfAbsent(transfer)) {
+            // The key is taken. The insert waited for the transaction holding it to
+            // commit, so this read finds that transfer.
+            Transfer existing = transfers.findByIdempotencyKey(idempotencyKey)
+                    .orElseThrow(() -> new IllegalStateException("Idempotency key conflicted but no transfer holds it"));
+            return sameRequest(existing, initiatorId, request);
+        }
 
         TransferRequested command = new TransferRequested(transferId, initiatorId,
                 request.fromAccountId(), request.toAccountId(), request.amount(), request.currency(), now);
         outbox.append(transferId, Topics.TRANSFER_COMMANDS, transferId, command);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentKeys.put(idempotencyKey, transferId);
+            }
+        });
         return transfer;
     }
 
+    /**
+     * Inserts the new transfer unless its idempotency key is taken, in one
+     * statement: a retry racing the original waits for it and then finds the key
+     * taken, instead of failing on the unique constraint.
+     */
+    private boolean insertIfAbsent(Transfer transfer) {
+        OffsetDateTime createdAt = OffsetDateTime.ofInstant(transfer.getCreatedAt(), ZoneOffset.UTC);
+        return jdbc.update("""
+                insert into transfers (id, initiator_id, from_account_id, to_account_id, amount, currency,
+                                       status, idempotency_key, created_at, updated_at, version)
+                values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+                on conflict (idempotency_key) do nothing
+                """, transfer.getId(), transfer.getInitiatorId(), transfer.getFromAccountId(),
+                transfer.getToAccountId(), transfer.getAmount(), transfer.getCurrency(),
+                transfer.getStatus().name(), transfer.getIdempotencyKey(), createdAt, createdAt) == 1;
+    }
+
+    /** The transfer a reused key resolves to, provided the same initiator asked for the same transfer. */
+    private static Transfer sameRequest(Transfer existing, String initiatorId, TransferRequest request) {
+        boolean same = existing.getInitiatorId().equals(initiatorId)
+                && existing.getFromAccountId().equals(request.fromAccountId())
+                && existing.getToAccountId().equals(request.toAccountId())
+                && existing.getAmount().compareTo(request.amount()) == 0
+                && existing.getCurrency().equals(request.currency());
+        if (!same) {
+            throw ApiException.conflict("Idempotency-Key was already used for a different transfer");
+        }
+        return existing;
+    }
+
     @Transactional(readOnly = true)
     public Transfer getForInitiator(String transferId, String initiatorId) {
         Transfer transfer = transfers.findById(transferId)
@@ -87,11 +150,6 @@ public class TransferService {
         return transfer;
     }
 
-    @Transactional(readOnly = true)
-    public List<Transfer> listForInitiator(String initiatorId) {
-        return transfers.findByInitiatorIdOrderByCreatedAtDesc(initiatorId);
-    }
-
     /** Records a successful outcome. Idempotent and a no-op on an already terminal transfer. */
     @Transactional
     public void completeTransfer(String transferId) {
@@ -105,7 +163,7 @@ public class TransferService {
     }
 
     private void applyOutcome(String transferId, java.util.function.Consumer<Transfer> mutation) {
-        if (processedEvents.existsById(transferId)) {
+        if (idempotency.isProcessed(transferId)) {
             return;
         }
         Transfer transfer = transfers.findById(transferId).orElse(null);
@@ -116,7 +174,15 @@ public class TransferService {
         if (transfer.isTerminal()) {
             return;
         }
+        if (jdbc.update("""
+                insert into processed_events (transfer_id, processed_at) values (?, ?)
+                on conflict do nothing
+                """, transferId, OffsetDateTime.ofInstant(Instant.now(clock), ZoneOffset.UTC)) == 0) {
+            // Another instance recorded this outcome since the guard last heard.
+            return;
+        }
+        idempotency.recorded(transferId);
         mutation.accept(transfer);
-        processedEvents.save(new ProcessedEvent(transferId, Instant.now(clock)));
+        events.publishEvent(new TransferSettled(transfer));
     }
 }
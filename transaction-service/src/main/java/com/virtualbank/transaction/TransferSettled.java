@@ -0,0 +1,10 @@
+package com.virtualbank.transaction;
+
+import com.virtualbank.transaction.domain.Transfer;
+
+/**
+ * Published when an outcome moves a transfer to COMPLETED or FAILED. Listeners
+ * that must not act on a rolled-back outcome take it after the commit.
+ */
+public record TransferSettled(Transfer transfer) {
+}
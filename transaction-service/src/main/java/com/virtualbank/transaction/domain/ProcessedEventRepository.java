@@ -1,6 +0,0 @@
-package com.virtualbank.transaction.domain;
-
-import org.springframework.data.jpa.repository.JpaRepository;
-
-public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, String> {
-}
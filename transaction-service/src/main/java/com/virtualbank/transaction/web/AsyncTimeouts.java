@@ -0,0 +1,46 @@
+package com.virtualbank.transaction.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Per-request timeouts for handlers that return a {@code StreamingResponseBody}.
+ * MVC gives such a body the one async timeout configured for every request, and
+ * unlike an {@code SseEmitter} or a {@code DeferredResult} it has no timeout of
+ * its own. A handler calls {@link #set} before returning the body, and the
+ * interceptor applies that timeout to this request alone, right before its async
+ * processing starts. Every other async request keeps the container's default.
+ */
+@Configuration(proxyBeanMethods = false)
+public class AsyncTimeouts implements WebMvcConfigurer {
+
+    private static final String TIMEOUT_ATTRIBUTE = AsyncTimeouts.class.getName() + ".timeout";
+
+    /** Gives this request's async processing {@code timeout} instead of the default. */
+    public static void set(HttpServletRequest request, Duration timeout) {
+        request.setAttribute(TIMEOUT_ATTRIBUTE, timeout.toMillis());
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // Called with the request's AsyncWebRequest before it starts async processing.
+                if (request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Long timeout
+                        && request instanceof AsyncWebRequest asyncRequest) {
+                    asyncRequest.setTimeout(timeout);
+                }
+            }
+        });
+    }
+}
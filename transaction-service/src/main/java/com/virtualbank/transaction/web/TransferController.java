@@ -1,36 +1,54 @@
 package com.virtualbank.transaction.web;
 
 import com.virtualbank.common.security.CurrentUser;
+import com.virtualbank.transaction.TransferExports;
+import com.virtualbank.transaction.TransferHistory;
 import com.virtualbank.transaction.TransferService;
 import com.virtualbank.transaction.domain.Transfer;
 import com.virtualbank.transaction.web.dto.TransferAccepted;
+import com.virtualbank.transaction.web.dto.TransferFilter;
+import com.virtualbank.transaction.web.dto.TransferPage;
 import com.virtualbank.transaction.web.dto.TransferRequest;
 import com.virtualbank.transaction.web.dto.TransferView;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.List;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/transfers")
 public class TransferController {
 
     private final TransferService transferService;
+    private final TransferHistory history;
+    private final TransferExports exports;
+    private final TransferOutcomeWaiters outcomeWaiters;
 
-    public TransferController(TransferService transferService) {
+    public TransferController(TransferService transferService, TransferHistory history, TransferExports exports,
+                              TransferOutcomeWaiters outcomeWaiters) {
         this.transferService = transferService;
+        this.history = history;
+        this.exports = exports;
+        this.outcomeWaiters = outcomeWaiters;
     }
 
     /**
-     * Accepts a transfer and returns 202 with a status URL to poll. The initiator
+     * Accepts a transfer and returns 202 with a status URL to poll and an events
+     * URL to follow instead. The initiator
      * is always the authenticated user, never a request field. The Idempotency-Key
      * header makes a retried submission resolve to the original transfer.
      */
@@ -47,10 +65,54 @@ public class TransferController {
         return TransferView.of(transferService.getForInitiator(id, CurrentUser.requireId()));
     }
 
+    /**
+     * Long poll for clients that cannot hold an event stream: the same body as
+     * GET /transfers/{id}, sent once the transfer is settled or after waitMs
+     * (at most {@code vbank.transfers.wait.max-ms}) with it still pending.
+     */
+    @GetMapping(path = "/{id}", params = "waitMs")
+    public DeferredResult<TransferView> byIdWhenSettled(@PathVariable String id, @RequestParam long waitMs) {
+        return outcomeWaiters.await(transferService.getForInitiator(id, CurrentUser.requireId()), waitMs);
+    }
+
+    /**
+     * Server-Sent Events: one {@code status} event with the settled transfer, the
+     * same body as GET /transfers/{id}, as soon as its outcome is recorded; then
+     * the stream ends.
+     */
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id) {
+        return outcomeWaiters.subscribe(transferService.getForInitiator(id, CurrentUser.requireId()));
+    }
+
+    /**
+     * The caller's transfers, newest first, one page at a time: pass the previous
+     * page's nextCursor to get the next. Filters are optional query parameters
+     * (status, accountId, from, to, minAmount, maxAmount).
+     */
     @GetMapping
-    public List<TransferView> list() {
-        return transferService.listForInitiator(CurrentUser.requireId()).stream()
-                .map(TransferView::of)
-                .toList();
+    public TransferPage list(TransferFilter filter,
+                             @RequestParam(required = false) String cursor,
+                             @RequestParam(defaultValue = "50") int limit) {
+        return history.page(CurrentUser.requireId(), filter, cursor, limit);
+    }
+
+    /**
+     * The caller's whole history, oldest first, streamed as NDJSON or CSV. Takes
+     * the same filters as the list; 429 while too many exports are running. The
+     * export gets {@code vbank.transfers.export.timeout-ms} to finish, applied to
+     * this request only.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        TransferFilter filter, HttpServletRequest request) {
+        TransferExports.Format exportFormat = TransferExports.Format.of(format);
+        StreamingResponseBody body = exports.export(CurrentUser.requireId(), filter, exportFormat);
+        AsyncTimeouts.set(request, exports.timeout());
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.extension() + "\"")
+                .body(body);
     }
 }
@@ -0,0 +1,150 @@
+package com.virtualbank.transaction.web;
+
+import com.virtualbank.transaction.TransferSettled;
+import com.virtualbank.transaction.domain.Transfer;
+import com.virtualbank.transaction.domain.TransferRepository;
+import com.virtualbank.transaction.web.dto.TransferView;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Requests waiting on a transfer's outcome, keyed by transferId: the streams of
+ * GET /transfers/{id}/events, which get a single {@code status} event and are
+ * closed, and the long polls of GET /transfers/{id}?waitMs=, which are answered
+ * with the transfer as soon as an outcome settling it commits. Neither holds a
+ * thread while it waits, and a settled outcome is handed to every waiter from
+ * the one it was read into, without a query per waiter.
+ *
+ * <p>A waiter never misses its outcome. One that arrives on a settled transfer is
+ * answered at once; one that arrives while the outcome is committing finds it in
+ * the read that follows its registration; and an outcome applied by another
+ * instance is found by the sweep every {@code vbank.transfers.events.sweep-ms},
+ * one read for all waiting transfers. A stream still waiting after
+ * {@code vbank.transfers.events.timeout-ms} is closed, and a long poll still
+ * waiting after its waitMs is answered with the pending transfer; either way the
+ * client comes back and is caught up the same way.
+ *
+ * <p>Waiters are answered on a virtual thread each, never on the thread that
+ * settled the transfer. That is usually a Kafka consumer right after its commit,
+ * and writing to a slow client's socket must not hold up the next record.
+ */
+@Component
+public class TransferOutcomeWaiters implements DisposableBean {
+
+    private final TransferRepository transfers;
+    private final long streamTimeoutMs;
+    private final long maxWaitMs;
+    private final ConcurrentMap<String, Set<Consumer<Transfer>>> waiting = new ConcurrentHashMap<>();
+    private final ExecutorService answering = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TransferOutcomeWaiters(TransferRepository transfers,
+                                  @Value("${vbank.transfers.events.timeout-ms:60000}") long streamTimeoutMs,
+                                  @Value("${vbank.transfers.wait.max-ms:30000}") long maxWaitMs) {
+        this.transfers = transfers;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /** Opens a stream on a transfer the caller may see. */
+    public SseEmitter subscribe(Transfer transfer) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        if (transfer.isTerminal()) {
+            send(emitter, transfer);
+            return emitter;
+        }
+        Consumer<Transfer> waiter = settled -> send(emitter, settled);
+        emitter.onCompletion(() -> unregister(transfer.getId(), waiter));
+        emitter.onTimeout(() -> unregister(transfer.getId(), waiter));
+        emitter.onError(error -> unregister(transfer.getId(), waiter));
+        register(transfer.getId(), waiter);
+        return emitter;
+    }
+
+    /**
+     * Answers with a transfer the caller may see once it is settled, or as it is
+     * after {@code waitMs}, capped at {@code vbank.transfers.wait.max-ms}.
+     */
+    public DeferredResult<TransferView> await(Transfer transfer, long waitMs) {
+        long timeoutMs = Math.clamp(waitMs, 0, maxWaitMs);
+        TransferView pending = TransferView.of(transfer);
+        DeferredResult<TransferView> result = new DeferredResult<>(timeoutMs, () -> pending);
+        if (transfer.isTerminal() || timeoutMs == 0) {
+            result.setResult(pending);
+            return result;
+        }
+        Consumer<Transfer> waiter = settled -> result.setResult(TransferView.of(settled));
+        result.onCompletion(() -> unregister(transfer.getId(), waiter));
+        register(transfer.getId(), waiter);
+        return result;
+    }
+
+    @TransactionalEventListener
+    public void onSettled(TransferSettled event) {
+        settled(event.transfer());
+    }
+
+    @Scheduled(fixedDelayString = "${vbank.transfers.events.sweep-ms:1000}")
+    public void sweep() {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        for (Transfer transfer : transfers.findAllById(List.copyOf(waiting.keySet()))) {
+            if (transfer.isTerminal()) {
+                settled(transfer);
+            }
+        }
+    }
+
+    private void register(String transferId, Consumer<Transfer> waiter) {
+        waiting.compute(transferId, (id, waiters) -> {
+            Set<Consumer<Transfer>> open = waiters != null ? waiters : ConcurrentHashMap.newKeySet();
+            open.add(waiter);
+            return open;
+        });
+        // The outcome may have committed between the caller's read and the registration.
+        transfers.findById(transferId).filter(Transfer::isTerminal).ifPresent(this::settled);
+    }
+
+    private void settled(Transfer transfer) {
+        Set<Consumer<Transfer>> waiters = waiting.remove(transfer.getId());
+        if (waiters != null) {
+            waiters.forEach(waiter -> answering.execute(() -> waiter.accept(transfer)));
+        }
+    }
+
+    private void unregister(String transferId, Consumer<Transfer> waiter) {
+        waiting.computeIfPresent(transferId, (id, waiters) -> {
+            waiters.remove(waiter);
+            return waiters.isEmpty() ? null : waiters;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        answering.shutdown();
+    }
+
+    private static void send(SseEmitter emitter, Transfer transfer) {
+        try {
+            emitter.send(SseEmitter.event().name("status").id(transfer.getId()).data(TransferView.of(transfer)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; nothing is waiting for this any more.
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -4,12 +4,13 @@ import com.virtualbank.transaction.domain.Transfer;
 
 /**
  * The 202 response to POST /transfers. The statusUrl points at the GET endpoint
- * the caller polls to follow the transfer to its outcome.
+ * the caller can poll to follow the transfer to its outcome; the eventsUrl at the
+ * event stream that pushes the outcome instead.
  */
-public record TransferAccepted(String transferId, String status, String statusUrl) {
+public record TransferAccepted(String transferId, String status, String statusUrl, String eventsUrl) {
 
     public static TransferAccepted of(Transfer transfer) {
         return new TransferAccepted(transfer.getId(), transfer.getStatus().name(),
-                "/transfers/" + transfer.getId());
+                "/transfers/" + transfer.getId(), "/transfers/" + transfer.getId() + "/events");
     }
 }
@@ -0,0 +1,20 @@
+package com.virtualbank.transaction.web.dto;
+
+import com.virtualbank.transaction.domain.TransferStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * The optional filters of GET /transfers, bound from query parameters. accountId
+ * matches either side of a transfer; from is inclusive and to exclusive, and both
+ * amount bounds are inclusive.
+ */
+public record TransferFilter(
+        TransferStatus status,
+        String accountId,
+        Instant from,
+        Instant to,
+        BigDecimal minAmount,
+        BigDecimal maxAmount) {
+}
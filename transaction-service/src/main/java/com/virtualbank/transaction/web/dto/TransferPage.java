@@ -0,0 +1,7 @@
+package com.virtualbank.transaction.web.dto;
+
+import java.util.List;
+
+/** A page of transfer history, newest first. nextCursor fetches the next page and is null on the last one. */
+public record TransferPage(List<TransferView> items, String nextCursor) {
+}
@@ -0,0 +1,29 @@
+-- Postgres refuses DETACH PARTITION ... CONCURRENTLY on a table that has a
+-- default partition, and OutboxPartitionMaintenance detaches expired days that
+-- way so it never takes an ACCESS EXCLUSIVE lock on the outbox. Maintenance
+-- keeps partitions premake-days ahead, so the default partition is not needed.
+--
+-- Anything that did land in it moves into day partitions created for it first.
+alter table outbox detach partition outbox_default;
+
+do
+$$
+declare
+    part_day date;
+begin
+    for part_day in select distinct (created_at at time zone 'UTC')::date from outbox_default
+    loop
+        if to_regclass('outbox_p' || to_char(part_day, 'YYYYMMDD')) is null then
+            execute format(
+                    'create table %I partition of outbox for values from (%L) to (%L)',
+                    'outbox_p' || to_char(part_day, 'YYYYMMDD'),
+                    to_char(part_day, 'YYYY-MM-DD') || ' 00:00:00+00',
+                    to_char(part_day + 1, 'YYYY-MM-DD') || ' 00:00:00+00');
+        end if;
+    end loop;
+end;
+$$;
+
+insert into outbox select * from outbox_default;
+
+drop table outbox_default;
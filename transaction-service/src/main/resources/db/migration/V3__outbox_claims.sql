@@ -0,0 +1,3 @@
+-- Supports the relay's claim query: finding whether an older unsent row shares a
+-- row's message key is an index probe rather than a scan of the unsent backlog.
+create index idx_outbox_unsent_key on outbox (message_key, created_at, id) where sent_at is null;
@@ -0,0 +1,64 @@
+-- Rebuild the outbox as a table range-partitioned by day on created_at, so
+-- retention is a cheap DETACH + DROP of whole days instead of deleting rows and
+-- vacuuming the heap. OutboxPartitionMaintenance creates partitions ahead of
+-- time and drops fully-sent ones past the retention window.
+--
+-- A partitioned table's primary key must include the partition key, so the key
+-- becomes (id, created_at). Ids are still generated unique by the producers.
+create table outbox_partitioned (
+    id              varchar(64)  not null,
+    topic           varchar(128) not null,
+    message_key     varchar(128) not null,
+    payload         text         not null,
+    type            varchar(128) not null,
+    created_at      timestamptz  not null,
+    sent_at         timestamptz,
+    attempts        integer      not null default 0,
+    next_attempt_at timestamptz,
+    parked_at       timestamptz,
+    last_error      varchar(512),
+    primary key (id, created_at)
+) partition by range (created_at);
+
+-- Catches rows if maintenance ever falls behind; normally stays empty.
+create table outbox_default partition of outbox_partitioned default;
+
+-- One partition per UTC day from the oldest unsent row up to a week ahead.
+do
+$$
+declare
+    first_day date := coalesce((select min(created_at) from outbox where sent_at is null), now()) at time zone 'UTC';
+    part_day  date;
+begin
+    for part_day in select generate_series(first_day::timestamp,
+                                           ((now() at time zone 'UTC')::date + 7)::timestamp,
+                                           interval '1 day')::date
+    loop
+        execute format(
+                'create table %I partition of outbox_partitioned for values from (%L) to (%L)',
+                'outbox_p' || to_char(part_day, 'YYYYMMDD'),
+                to_char(part_day, 'YYYY-MM-DD') || ' 00:00:00+00',
+                to_char(part_day + 1, 'YYYY-MM-DD') || ' 00:00:00+00');
+    end loop;
+end;
+$$;
+
+-- Only the unsent rows move over; the sent history is not read by anything.
+insert into outbox_partitioned (id, topic, message_key, payload, type, created_at, sent_at, attempts,
+                                next_attempt_at, parked_at, last_error)
+select id, topic, message_key, payload, type, created_at, sent_at, attempts, next_attempt_at, parked_at, last_error
+from outbox
+where sent_at is null;
+
+drop table outbox;
+alter table outbox_partitioned rename to outbox;
+alter table outbox rename constraint outbox_partitioned_pkey to outbox_pkey;
+
+create index idx_outbox_unsent on outbox (created_at) where sent_at is null;
+create index idx_outbox_unsent_key on outbox (message_key, created_at, id) where sent_at is null;
+create index idx_outbox_ready on outbox (created_at, id) where sent_at is null and parked_at is null;
+
+create trigger outbox_notify
+    after insert on outbox
+    for each statement
+execute function notify_outbox();
@@ -0,0 +1,6 @@
+-- Publication streamed by the CDC relay (vbank.outbox.mode=cdc) through a
+-- pgoutput replication slot. Only inserts matter: the relay publishes each new
+-- row and never looks at updates or deletes. publish_via_partition_root makes
+-- inserts into the daily partitions arrive as inserts into outbox itself.
+create publication vbank_outbox for table outbox
+    with (publish = 'insert', publish_via_partition_root = true);
@@ -0,0 +1,2 @@
+-- IdempotencyGuard prunes processed events past their retention, oldest first.
+create index idx_processed_events_processed_at on processed_events (processed_at);
@@ -0,0 +1,5 @@
+-- Transfer history is paged by keyset on (created_at, id), newest first. The id
+-- breaks ties between transfers created in the same microsecond, and having it in
+-- the index lets a page start at its cursor instead of scanning past earlier pages.
+drop index idx_transfers_initiator;
+create index idx_transfers_initiator on transfers (initiator_id, created_at desc, id desc);
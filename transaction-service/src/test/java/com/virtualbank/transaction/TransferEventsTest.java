@@ -0,0 +1,146 @@
+package com.virtualbank.transaction;
+
+import com.virtualbank.common.outbox.OutboxRepository;
+import com.virtualbank.transaction.domain.Transfer;
+import com.virtualbank.transaction.domain.TransferRepository;
+import com.virtualbank.transaction.web.dto.TransferRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves the waiting endpoints over real HTTP: a client following
+ * GET /transfers/{id}/events gets one {@code status} event once the outcome
+ * commits and then the stream ends, a stream on a settled transfer is answered
+ * at once, and a long poll returns when the outcome commits rather than at its
+ * waitMs. Tokens are decoded by a test decoder that takes the bearer value as
+ * the subject, so no issuer is needed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration")
+@Testcontainers
+class TransferEventsTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("pgvector/pgvector:pg17");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    private static final String INITIATOR = "user-1";
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class SubjectTokenConfiguration {
+
+        @Bean
+        JwtDecoder subjectTokenDecoder() {
+            return token -> Jwt.withTokenValue(token).header("alg", "none").subject(token).build();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferRepository transfers;
+
+    @Autowired
+    private OutboxRepository outbox;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void clean() {
+        outbox.deleteAll();
+        transfers.deleteAll();
+    }
+
+    @Test
+    void streamSendsOneStatusEventWhenTheOutcomeCommitsAndEnds() throws Exception {
+        Transfer transfer = request("key-stream");
+        CompletableFuture<HttpResponse<String>> stream = get("/transfers/" + transfer.getId() + "/events");
+
+        // Give the stream time to register; it must still be open.
+        Thread.sleep(300);
+        assertThat(stream).isNotDone();
+
+        transferService.completeTransfer(transfer.getId());
+
+        HttpResponse<String> response = stream.get(10, TimeUnit.SECONDS);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("text/event-stream"));
+        assertThat(response.body())
+                .contains("event:status")
+                .contains("id:" + transfer.getId())
+                .contains("\"status\":\"COMPLETED\"");
+        assertThat(response.body().split("event:status", -1)).hasSize(2);
+    }
+
+    @Test
+    void streamOnASettledTransferIsAnsweredAtOnce() throws Exception {
+        Transfer transfer = request("key-settled");
+        transferService.failTransfer(transfer.getId(), "INSUFFICIENT_FUNDS");
+
+        HttpResponse<String> response = get("/transfers/" + transfer.getId() + "/events").get(10, TimeUnit.SECONDS);
+
+        assertThat(response.body()).contains("\"status\":\"FAILED\"").contains("INSUFFICIENT_FUNDS");
+    }
+
+    @Test
+    void longPollReturnsWhenTheOutcomeCommits() throws Exception {
+        Transfer transfer = request("key-poll");
+        long started = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> poll = get("/transfers/" + transfer.getId() + "?waitMs=20000");
+
+        Thread.sleep(300);
+        transferService.completeTransfer(transfer.getId());
+
+        HttpResponse<String> response = poll.get(10, TimeUnit.SECONDS);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("\"status\":\"COMPLETED\"");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+    }
+
+    private Transfer request(String idempotencyKey) {
+        return transferService.requestTransfer(INITIATOR, idempotencyKey,
+                new TransferRequest("acc-from", "acc-to", new BigDecimal("4.00"), "EGP"));
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + INITIATOR)
+                .GET()
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,27 +1,48 @@
 package com.virtualbank.transaction;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.virtualbank.common.event.TransferRequested;
 import com.virtualbank.common.messaging.Topics;
 import com.virtualbank.common.outbox.OutboxEntry;
 import com.virtualbank.common.outbox.OutboxRepository;
+import com.virtualbank.common.web.ApiException;
 import com.virtualbank.transaction.domain.Transfer;
 import com.virtualbank.transaction.domain.TransferRepository;
 import com.virtualbank.transaction.domain.TransferStatus;
+import com.virtualbank.transaction.web.TransferOutcomeWaiters;
+import com.virtualbank.transaction.web.dto.TransferFilter;
+import com.virtualbank.transaction.web.dto.TransferPage;
 import com.virtualbank.transaction.web.dto.TransferRequest;
+import com.virtualbank.transaction.web.dto.TransferView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Proves the transfer ledger and orchestration against a real Postgres. The
@@ -31,8 +52,12 @@ import static org.assertj.core.api.Assertions.assertThat;
  *
  * The four behaviours under test: a request creates a PENDING transfer and exactly
  * one TransferRequested command in the outbox; the same Idempotency-Key resolves to
- * the same transfer; outcomes move the transfer to COMPLETED or FAILED; and a
- * replayed outcome never moves a terminal transfer.
+ * the same transfer, even for concurrent retries, and is a conflict for another
+ * transfer; outcomes move the transfer to COMPLETED or FAILED; and a replayed
+ * outcome never moves a terminal transfer. A long poll on a pending
+ * transfer is answered by the outcome's commit, and history pages by cursor
+ * cover every transfer once, newest first. An export streams the same rows, is
+ * refused once the concurrency limit is reached, and stops once past its timeout.
  */
 @SpringBootTest(
         properties = "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration")
@@ -58,6 +83,18 @@ class TransferOrchestrationTest {
     @Autowired
     private OutboxRepository outbox;
 
+    @Autowired
+    private TransferOutcomeWaiters outcomeWaiters;
+
+    @Autowired
+    private TransferHistory history;
+
+    @Autowired
+    private TransferExports exports;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private static final String INITIATOR = "user-1";
 
     @BeforeEach
@@ -96,6 +133,38 @@ class TransferOrchestrationTest {
         assertThat(outbox.count()).isEqualTo(1);
     }
 
+    @Test
+    void concurrentRetriesWithOneKeyResolveToOneTransfer() throws Exception {
+        TransferRequest request = new TransferRequest("acc-from", "acc-to", new BigDecimal("4.00"), "EGP");
+        Callable<String> submit = () -> transferService.requestTransfer(INITIATOR, "key-race", request).getId();
+
+        List<String> ids = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            for (Future<String> id : pool.invokeAll(Collections.nCopies(8, submit))) {
+                ids.add(id.get());
+            }
+        }
+
+        assertThat(ids).containsOnly(ids.getFirst());
+        assertThat(transfers.count()).isEqualTo(1);
+        assertThat(outbox.count()).isEqualTo(1);
+    }
+
+    @Test
+    void reusingAKeyForADifferentTransferIsAConflict() {
+        TransferRequest request = new TransferRequest("acc-from", "acc-to", new BigDecimal("6.00"), "EGP");
+        transferService.requestTransfer(INITIATOR, "key-reused", request);
+
+        assertThatThrownBy(() -> transferService.requestTransfer("user-2", "key-reused", request))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+        assertThatThrownBy(() -> transferService.requestTransfer(INITIATOR, "key-reused",
+                new TransferRequest("acc-from", "acc-to", new BigDecimal("60.00"), "EGP")))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(transfers.count()).isEqualTo(1);
+    }
+
     @Test
     void completedAndFailedOutcomesUpdateTheLedger() {
         Transfer completed = transferService.requestTransfer(INITIATOR, "key-ok",
@@ -125,7 +194,106 @@ class TransferOrchestrationTest {
         assertThat(reloaded.getFailureReason()).isNull();
     }
 
+    @Test
+    void longPollOnPendingTransferIsAnsweredWhenTheOutcomeCommits() throws InterruptedException {
+        Transfer transfer = transferService.requestTransfer(INITIATOR, "key-wait",
+                new TransferRequest("acc-from", "acc-to", new BigDecimal("3.00"), "EGP"));
+
+        DeferredResult<TransferView> answer = outcomeWaiters.await(transfer, 10_000);
+        assertThat(answer.hasResult()).isFalse();
+
+        transferService.completeTransfer(transfer.getId());
+        // Answered off the committing thread, so shortly after rather than during the commit.
+        assertThat(awaitResult(answer).status()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void historyPagesCoverEveryTransferOnceNewestFirst() {
+        List<String> requested = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            requested.add(transferService.requestTransfer(INITIATOR, "key-page-" + i,
+                    new TransferRequest("acc-from", "acc-to", new BigDecimal(i + 1), "EGP")).getId());
+        }
+        transferService.requestTransfer("user-2", "key-other",
+                new TransferRequest("acc-x", "acc-y", BigDecimal.ONE, "EGP"));
+        TransferFilter all = new TransferFilter(null, null, null, null, null, null);
+
+        List<TransferView> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransferPage page = history.page(INITIATOR, all, cursor, 3);
+            assertThat(page.items()).hasSizeLessThanOrEqualTo(3);
+            paged.addAll(page.items());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(paged).extracting(TransferView::transferId).containsExactlyInAnyOrderElementsOf(requested);
+        assertThat(paged).extracting(TransferView::createdAt).isSortedAccordingTo(Comparator.reverseOrder());
+
+        TransferPage bigOnes = history.page(INITIATOR,
+                new TransferFilter(null, null, null, null, new BigDecimal("5.00"), null), null, 50);
+        assertThat(bigOnes.items()).extracting(TransferView::transferId)
+                .containsExactlyInAnyOrderElementsOf(requested.subList(4, 7));
+        assertThat(bigOnes.nextCursor()).isNull();
+    }
+
+    @Test
+    void exportStreamsEveryTransferAndIsRefusedBeyondTheLimit() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            transferService.requestTransfer(INITIATOR, "key-export-" + i,
+                    new TransferRequest("acc-from", "acc-to", new BigDecimal("1.50"), "EGP"));
+        }
+        TransferFilter all = new TransferFilter(null, null, null, null, null, null);
+
+        StreamingResponseBody first = exports.export(INITIATOR, all, TransferExports.Format.CSV);
+        StreamingResponseBody second = exports.export(INITIATOR, all, TransferExports.Format.NDJSON);
+        assertThatThrownBy(() -> exports.export(INITIATOR, all, TransferExports.Format.CSV))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        first.writeTo(csv);
+        assertThat(csv.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(4)
+                .first().asString().startsWith("transferId,");
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        second.writeTo(ndjson);
+        assertThat(ndjson.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(3)
+                .allSatisfy(line -> assertThat(line).contains("\"amount\":1.50"));
+
+        // Written exports give their slots back.
+        exports.export(INITIATOR, all, TransferExports.Format.CSV).writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test
+    void anExportPastItsTimeoutStopsReadingAndGivesItsSlotBack() throws IOException {
+        transferService.requestTransfer(INITIATOR, "key-slow-export",
+                new TransferRequest("acc-from", "acc-to", new BigDecimal("1.50"), "EGP"));
+        TransferFilter all = new TransferFilter(null, null, null, null, null, null);
+        TransferExports expired = new TransferExports(history, objectMapper, 1, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> expired.export(INITIATOR, all, TransferExports.Format.NDJSON).writeTo(out))
+                .isInstanceOf(IOException.class);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEmpty();
+
+        expired.export(INITIATOR, all, TransferExports.Format.NDJSON);
+    }
+
     private Transfer reload(String id) {
         return transfers.findById(id).orElseThrow();
     }
+
+    private static TransferView awaitResult(DeferredResult<TransferView> answer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!answer.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(answer.hasResult()).isTrue();
+        return (TransferView) answer.getResult();
+    }
 }
@@ -0,0 +1,42 @@
+package com.virtualbank.common.autoconfigure;
+
+import com.virtualbank.common.idempotency.IdempotencyGuard;
+import com.virtualbank.common.idempotency.IdempotencyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+
+/**
+ * Wires the {@link IdempotencyGuard} for services that opt in with
+ * vbank.idempotency.enabled=true and have a {@code processed_events} inbox
+ * (account-service and transaction-service). The guard prunes and re-reads that
+ * table on a schedule.
+ */
+@AutoConfiguration(after = {JdbcTemplateAutoConfiguration.class, VbankCommonAutoConfiguration.class})
+@ConditionalOnClass(JdbcTemplate.class)
+@ConditionalOnProperty(prefix = "vbank.idempotency", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(IdempotencyProperties.class)
+@EnableScheduling
+public class VbankIdempotencyAutoConfiguration {
+
+    /** Falls back to a private registry when the service has no actuator, so the guard never null-checks. */
+    @Bean
+    @ConditionalOnBean(JdbcTemplate.class)
+    @ConditionalOnMissingBean
+    public IdempotencyGuard idempotencyGuard(JdbcTemplate jdbc, Clock clock, IdempotencyProperties properties,
+                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        return new IdempotencyGuard(jdbc, clock, properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -1,51 +1,207 @@
 package com.virtualbank.common.autoconfigure;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.virtualbank.common.outbox.OutboxAppender;
+import com.virtualbank.common.outbox.OutboxCdcRelay;
+import com.virtualbank.common.outbox.OutboxEndpoint;
+import com.virtualbank.common.outbox.OutboxFastPath;
+import com.virtualbank.common.outbox.OutboxMetrics;
+import com.virtualbank.common.outbox.OutboxNotificationListener;
+import com.virtualbank.common.outbox.OutboxPartitionMaintenance;
+import com.virtualbank.common.outbox.OutboxProducer;
+import com.virtualbank.common.outbox.OutboxProperties;
 import com.virtualbank.common.outbox.OutboxRelay;
 import com.virtualbank.common.outbox.OutboxRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.sql.DataSource;
 import java.time.Clock;
+import java.util.UUID;
 
 /**
  * Wires the transactional outbox for services that opt in with
  * vbank.outbox.enabled=true and expose an OutboxRepository (account-service and
  * transaction-service). The appender records events in the producing
- * transaction; the relay forwards them to Kafka.
+ * transaction; the relay forwards them to Kafka, woken by Postgres NOTIFY when
+ * vbank.outbox.notify.enabled is true and by a poll otherwise. With
+ * vbank.outbox.mode=cdc the polling relay and its helpers are replaced by a relay
+ * that tails the table's logical replication stream. vbank.outbox.producer.enabled
+ * gives the relay its own idempotent, batching producer.
  */
 @AutoConfiguration(after = {KafkaAutoConfiguration.class, JacksonAutoConfiguration.class,
+        DataSourceAutoConfiguration.class, JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
         VbankCommonAutoConfiguration.class})
 @ConditionalOnClass(KafkaTemplate.class)
 @ConditionalOnProperty(prefix = "vbank.outbox", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(OutboxProperties.class)
+@EnableScheduling
 public class VbankMessagingAutoConfiguration {
 
     @Bean
     @ConditionalOnBean(OutboxRepository.class)
     @ConditionalOnMissingBean
-    public OutboxAppender outboxAppender(OutboxRepository repository, ObjectMapper objectMapper, Clock clock) {
-        return new OutboxAppender(repository, objectMapper, clock);
+    public OutboxAppender outboxAppender(OutboxRepository repository, ObjectProvider<JdbcTemplate> jdbc,
+                                         ObjectMapper objectMapper, Clock clock,
+                                         ObjectProvider<OutboxFastPath> fastPath, OutboxMetrics metrics) {
+        return new OutboxAppender(repository, jdbc.getIfAvailable(), objectMapper, clock, fastPath.getIfAvailable(),
+                metrics);
+    }
+
+    /** Falls back to a private registry when the service has no actuator, so callers never null-check. */
+    @Bean
+    @ConditionalOnBean(OutboxRepository.class)
+    @ConditionalOnMissingBean
+    public OutboxMetrics outboxMetrics(ObjectProvider<MeterRegistry> meterRegistry, OutboxRepository repository,
+                                       Clock clock, OutboxProperties properties, Environment environment) {
+        return new OutboxMetrics(meterRegistry.getIfAvailable(SimpleMeterRegistry::new),
+                properties.getMode() == OutboxProperties.Mode.CDC ? null : repository, clock,
+                environment.getProperty("spring.application.name", "unknown"));
+    }
+
+    @Bean
+    @ConditionalOnBean(KafkaProperties.class)
+    @ConditionalOnProperty(prefix = "vbank.outbox.producer", name = "enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    public OutboxProducer outboxProducer(KafkaProperties kafkaProperties, ObjectProvider<SslBundles> sslBundles,
+                                         OutboxProperties properties, ObjectProvider<MeterRegistry> meterRegistry,
+                                         Environment environment) {
+        OutboxProperties.Producer settings = properties.getProducer();
+        String service = environment.getProperty("spring.application.name", "vbank");
+        String transactionIdPrefix = null;
+        if (settings.isTransactional()) {
+            if (kafkaProperties.getConsumer().getIsolationLevel() != KafkaProperties.IsolationLevel.READ_COMMITTED) {
+                throw new IllegalStateException("vbank.outbox.producer.transactional=true needs "
+                        + "spring.kafka.consumer.isolation-level=read_committed, or aborted relay batches are consumed");
+            }
+            // Unique per instance: replicas sharing a transactional id would fence each other off.
+            transactionIdPrefix = settings.getTransactionIdPrefix() != null
+                    ? settings.getTransactionIdPrefix()
+                    : service + "-outbox-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        }
+        return new OutboxProducer(kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable()), settings,
+                transactionIdPrefix, kafkaProperties.getTemplate().isObservationEnabled(),
+                meterRegistry.getIfAvailable(), service);
+    }
+
+    /** The template the relays publish with: the outbox's own producer when enabled, else the service's. */
+    static KafkaTemplate<String, String> relayTemplate(KafkaTemplate<String, String> kafka,
+                                                       ObjectProvider<OutboxProducer> producer) {
+        OutboxProducer outboxProducer = producer.getIfAvailable();
+        return outboxProducer != null ? outboxProducer.template() : kafka;
+    }
+
+    @Bean
+    @ConditionalOnBean(JdbcTemplate.class)
+    @ConditionalOnProperty(prefix = "vbank.outbox.partitions", name = "enabled", havingValue = "true",
+            matchIfMissing = true)
+    @ConditionalOnMissingBean
+    public OutboxPartitionMaintenance outboxPartitionMaintenance(JdbcTemplate jdbc, Clock clock,
+                                                                 OutboxProperties properties,
+                                                                 ObjectProvider<MeterRegistry> meterRegistry,
+                                                                 Environment environment) {
+        String cdcSlotName = properties.getMode() == OutboxProperties.Mode.CDC
+                ? cdcSlotName(properties, environment)
+                : null;
+        return new OutboxPartitionMaintenance(jdbc, clock, properties.getPartitions(), cdcSlotName,
+                meterRegistry.getIfAvailable());
+    }
+
+    /** The CDC relay's replication slot: the configured name, else the application name plus {@code _outbox}. */
+    static String cdcSlotName(OutboxProperties properties, Environment environment) {
+        String slotName = properties.getCdc().getSlotName();
+        if (slotName != null) {
+            return slotName;
+        }
+        return environment.getProperty("spring.application.name", "vbank")
+                .toLowerCase().replaceAll("[^a-z0-9_]", "_") + "_outbox";
     }
 
     @Configuration(proxyBeanMethods = false)
-    @EnableScheduling
+    @ConditionalOnClass(Endpoint.class)
+    static class OutboxEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnBean({OutboxRepository.class, PlatformTransactionManager.class})
+        @ConditionalOnAvailableEndpoint
+        @ConditionalOnMissingBean
+        public OutboxEndpoint outboxEndpoint(OutboxRepository repository,
+                                             PlatformTransactionManager transactionManager) {
+            return new OutboxEndpoint(repository, new TransactionTemplate(transactionManager));
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "vbank.outbox", name = "mode", havingValue = "poll", matchIfMissing = true)
     static class OutboxRelayConfiguration {
 
         @Bean
         @ConditionalOnBean({OutboxRepository.class, KafkaTemplate.class})
         @ConditionalOnMissingBean
-        public OutboxRelay outboxRelay(OutboxRepository repository, KafkaTemplate<String, String> kafka, Clock clock) {
-            return new OutboxRelay(repository, kafka, clock);
+        public OutboxRelay outboxRelay(OutboxRepository repository, KafkaTemplate<String, String> kafka,
+                                       ObjectProvider<OutboxProducer> producer, Clock clock,
+                                       OutboxProperties properties, OutboxMetrics metrics) {
+            return new OutboxRelay(repository, relayTemplate(kafka, producer), clock, properties, metrics);
+        }
+
+        @Bean
+        @ConditionalOnBean(OutboxRelay.class)
+        @ConditionalOnProperty(prefix = "vbank.outbox.fast-path", name = "enabled", havingValue = "true")
+        @ConditionalOnMissingBean
+        public OutboxFastPath outboxFastPath(OutboxRelay relay, OutboxProperties properties) {
+            return new OutboxFastPath(relay, properties);
+        }
+
+        @Bean
+        @ConditionalOnBean({OutboxRelay.class, DataSource.class})
+        @ConditionalOnClass(name = "org.postgresql.PGConnection")
+        @ConditionalOnProperty(prefix = "vbank.outbox.notify", name = "enabled", havingValue = "true")
+        @ConditionalOnMissingBean
+        public OutboxNotificationListener outboxNotificationListener(DataSource dataSource, OutboxRelay relay,
+                                                                     OutboxProperties properties) {
+            return new OutboxNotificationListener(dataSource, relay, properties);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "vbank.outbox", name = "mode", havingValue = "cdc")
+    @ConditionalOnClass(name = "org.postgresql.PGConnection")
+    static class OutboxCdcConfiguration {
+
+        @Bean
+        @ConditionalOnBean({OutboxRepository.class, KafkaTemplate.class, DataSourceProperties.class})
+        @ConditionalOnMissingBean
+        public OutboxCdcRelay outboxCdcRelay(DataSourceProperties dataSource, KafkaTemplate<String, String> kafka,
+                                             ObjectProvider<OutboxProducer> producer,
+                                             OutboxProperties properties, OutboxMetrics metrics,
+                                             Environment environment) {
+            return new OutboxCdcRelay(dataSource.determineUrl(), dataSource.determineUsername(),
+                    dataSource.determinePassword(), cdcSlotName(properties, environment), relayTemplate(kafka, producer), properties, metrics);
         }
     }
 }
@@ -0,0 +1,235 @@
+package com.virtualbank.common.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "was this transferId processed?" for a consumer's idempotency inbox,
+ * the {@code processed_events (transfer_id, processed_at)} table, mostly without
+ * reading it. Committed ids are remembered exactly, up to
+ * {@code vbank.idempotency.recent-ids}, so a prompt redelivery is skipped without
+ * a read; every other id is looked up in a Bloom filter of the table, and only one
+ * the filter cannot rule out is read. Almost every message is new, so almost
+ * every check ends at the filter.
+ *
+ * <p>The filter is built from the table on the first maintenance run, and until
+ * then every check reads. It only learns this instance's ids afterwards, so a
+ * message another instance processed meanwhile (after a rebalance, say) passes
+ * as new. The table's primary key stays the backstop: callers insert the id with
+ * {@code on conflict do nothing}, which waits out a racing insert, and treat an id
+ * the insert skipped as processed.
+ *
+ * <p>Callers check before doing the work and call {@link #recorded} once their
+ * insert has added the id. Maintenance runs every {@code vbank.idempotency.maintenance-interval-ms}:
+ * it deletes ids older than {@code vbank.idempotency.retention} and rebuilds the
+ * filter from what is left, so neither the table nor the filter's error rate keep
+ * growing. Checks are counted in {@code vbank.idempotency.checks}, tagged with the
+ * path that answered them.
+ */
+public class IdempotencyGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyGuard.class);
+
+    private static final int PAGE_SIZE = 10_000;
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final IdempotencyProperties properties;
+    private final Map<String, Boolean> recent;
+    private final Counter answeredByRecent;
+    private final Counter answeredByFilter;
+    private final Counter answeredByTable;
+
+    /** Null until the first build, and always when the filter is disabled. */
+    private volatile BloomFilter filter;
+    /** The filter being built, which takes new ids too while the table is scanned. */
+    private volatile BloomFilter building;
+
+    public IdempotencyGuard(JdbcTemplate jdbc, Clock clock, IdempotencyProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.properties = properties;
+        int recentIds = properties.getRecentIds();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentIds;
+            }
+        };
+        this.answeredByRecent = checks(meterRegistry, "recent");
+        this.answeredByFilter = checks(meterRegistry, "filter");
+        this.answeredByTable = checks(meterRegistry, "table");
+    }
+
+    /** Whether the id is in the inbox, read from the table only when neither the recent ids nor the filter can tell. */
+    public boolean isProcessed(String id) {
+        if (isRecent(id)) {
+            answeredByRecent.increment();
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(id)) {
+            answeredByFilter.increment();
+            return false;
+        }
+        answeredByTable.increment();
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists (select 1 from processed_events where transfer_id = ?)", Boolean.class, id));
+    }
+
+    /** The given ids that are in the inbox, reading only those neither the recent ids nor the filter rule on. */
+    public Set<String> processed(Collection<String> ids) {
+        Set<String> processed = new HashSet<>();
+        List<String> unsure = new ArrayList<>();
+        BloomFilter current = filter;
+        for (String id : ids) {
+            if (isRecent(id)) {
+                answeredByRecent.increment();
+                processed.add(id);
+            } else if (current != null && !current.mightContain(id)) {
+                answeredByFilter.increment();
+            } else {
+                unsure.add(id);
+            }
+        }
+        if (!unsure.isEmpty()) {
+            answeredByTable.increment(unsure.size());
+            processed.addAll(jdbc.queryForList(
+                    "select transfer_id from processed_events where transfer_id = any (cast(? as varchar[]))",
+                    String.class, (Object) unsure.toArray(String[]::new)));
+        }
+        return processed;
+    }
+
+    /**
+     * Notes ids the current transaction has inserted into the inbox. They go into
+     * the filter at once, and into the recent ids once the transaction commits, so
+     * a rolled-back attempt is never taken for a processed one.
+     */
+    public void recorded(Collection<String> ids) {
+        addToFilters(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> committed = List.copyOf(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(committed);
+                }
+            });
+        } else {
+            remember(ids);
+        }
+    }
+
+    public void recorded(String id) {
+        recorded(List.of(id));
+    }
+
+    /** Prunes expired ids and rebuilds the filter from the table. Runs on start, then on the interval. */
+    @Scheduled(fixedDelayString = "${vbank.idempotency.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        try {
+            prune();
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Idempotency maintenance failed, will retry on the next run", e);
+        }
+    }
+
+    private void prune() {
+        OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.now(clock).minus(properties.getRetention()),
+                ZoneOffset.UTC);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbc.update("""
+                    delete from processed_events where transfer_id in (
+                        select transfer_id from processed_events where processed_at < ? limit ?)
+                    """, cutoff, properties.getPruneBatchSize());
+            total += deleted;
+        } while (deleted >= properties.getPruneBatchSize());
+        if (total > 0) {
+            log.info("Pruned {} processed events older than {}", total, cutoff);
+        }
+    }
+
+    private void rebuild() {
+        if (!properties.isFilterEnabled()) {
+            return;
+        }
+        Long rows = jdbc.queryForObject("select count(*) from processed_events", Long.class);
+        BloomFilter next = new BloomFilter(Math.max(properties.getExpectedIds(), 2 * (rows == null ? 0 : rows)),
+                properties.getFalsePositiveRate());
+        building = next;
+        try {
+            String after = "";
+            while (after != null) {
+                List<String> page = jdbc.queryForList("""
+                        select transfer_id from processed_events where transfer_id > ?
+                        order by transfer_id limit ?
+                        """, String.class, after, PAGE_SIZE);
+                page.forEach(next::put);
+                after = page.size() < PAGE_SIZE ? null : page.getLast();
+            }
+            filter = next;
+        } finally {
+            building = null;
+        }
+        log.debug("Rebuilt the processed-events filter from {} ids", rows);
+    }
+
+    private void addToFilters(Collection<String> ids) {
+        BloomFilter current = filter;
+        BloomFilter next = building;
+        for (String id : ids) {
+            if (current != null) {
+                current.put(id);
+            }
+            if (next != null) {
+                next.put(id);
+            }
+        }
+    }
+
+    private void remember(Collection<String> ids) {
+        // Again, for an id inserted before a rebuild's scan and committed after it.
+        addToFilters(ids);
+        synchronized (recent) {
+            for (String id : ids) {
+                recent.put(id, Boolean.TRUE);
+            }
+        }
+    }
+
+    private boolean isRecent(String id) {
+        synchronized (recent) {
+            return recent.containsKey(id);
+        }
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String answeredBy) {
+        return Counter.builder("vbank.idempotency.checks")
+                .description("Processed-id checks, by what answered them")
+                .tag("answered.by", answeredBy)
+                .register(meterRegistry);
+    }
+}
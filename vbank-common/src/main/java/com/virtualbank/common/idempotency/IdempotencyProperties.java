@@ -0,0 +1,93 @@
+package com.virtualbank.common.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning for the {@link IdempotencyGuard} in front of {@code processed_events},
+ * bound from {@code vbank.idempotency.*}.
+ */
+@ConfigurationProperties(prefix = "vbank.idempotency")
+public class IdempotencyProperties {
+
+    /** Whether the guard is wired at all. Read by the auto-configuration condition. */
+    private boolean enabled;
+
+    /** Keep a Bloom filter of processed ids; off means every check not answered from recent ids reads the table. */
+    private boolean filterEnabled = true;
+
+    /** Ids the filter is sized for at least; it is sized for twice the table when that is more. */
+    private long expectedIds = 1_000_000;
+
+    /** Share of new ids the filter reports as possibly processed, sending them to the table. */
+    private double falsePositiveRate = 0.01;
+
+    /** Most committed ids remembered exactly, so a prompt redelivery is skipped without a read. */
+    private int recentIds = 10_000;
+
+    /**
+     * How long a processed id is kept. Must outlast any redelivery of its message,
+     * so keep it above the topic's retention.
+     */
+    private Duration retention = Duration.ofDays(14);
+
+    /** Rows deleted per statement when pruning. */
+    private int pruneBatchSize = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isFilterEnabled() {
+        return filterEnabled;
+    }
+
+    public void setFilterEnabled(boolean filterEnabled) {
+        this.filterEnabled = filterEnabled;
+    }
+
+    public long getExpectedIds() {
+        return expectedIds;
+    }
+
+    public void setExpectedIds(long expectedIds) {
+        this.expectedIds = expectedIds;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public int getRecentIds() {
+        return recentIds;
+    }
+
+    public void setRecentIds(int recentIds) {
+        this.recentIds = recentIds;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public int getPruneBatchSize() {
+        return pruneBatchSize;
+    }
+
+    public void setPruneBatchSize(int pruneBatchSize) {
+        this.pruneBatchSize = pruneBatchSize;
+    }
+}
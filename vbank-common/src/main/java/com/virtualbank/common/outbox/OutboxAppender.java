@@ -2,25 +2,74 @@ package com.virtualbank.common.outbox;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Appends an event to the outbox. Call this inside the same transaction as the
  * state change it describes; the {@link OutboxRelay} publishes it afterwards.
  * Wired by VbankMessagingAutoConfiguration when vbank.outbox.enabled is true.
+ *
+ * <p>When an {@link OutboxFastPath} is present, the ids appended in a transaction
+ * are handed to it once that transaction commits, so the events usually reach
+ * Kafka without waiting for the relay. The relay remains the guarantee.
+ * Appended rows are counted per topic when {@link OutboxMetrics} is given.
+ *
+ * <p>{@link #appendAll(List)} is for producers that write many events in one
+ * transaction: the rows go in as one JDBC batch instead of one persisted entity
+ * each. Either way, serialization uses an {@link ObjectWriter} cached per event
+ * class, so the mapper resolves a type's serializer once rather than per call.
+ *
+ * <p>The relay publishes in {@code (created_at, id)} order and ids are random, so
+ * rows sharing a creation time would go out in no particular order. Every row
+ * this appender writes is stamped a microsecond (Postgres' resolution) after the
+ * one before, even within one batch or when the clock has not moved, so a
+ * producer's events are published in the order it appended them.
  */
 public class OutboxAppender {
 
+    private static final String INSERT = """
+            insert into outbox (id, topic, message_key, payload, type, created_at, attempts)
+            values (?, ?, ?, ?, ?, ?, 0)
+            """;
+
     private final OutboxRepository repository;
+    private final JdbcTemplate jdbc;
     private final ObjectMapper objectMapper;
     private final Clock clock;
+    private final OutboxFastPath fastPath;
+    private final OutboxMetrics metrics;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    /** The last creation time stamped, in microseconds since the epoch. */
+    private final AtomicLong lastStampMicros = new AtomicLong(Long.MIN_VALUE);
 
     public OutboxAppender(OutboxRepository repository, ObjectMapper objectMapper, Clock clock) {
+        this(repository, null, objectMapper, clock, null, null);
+    }
+
+    /**
+     * @param jdbc used by {@link #appendAll(List)}; when null, batches fall back to the repository
+     */
+    public OutboxAppender(OutboxRepository repository, JdbcTemplate jdbc, ObjectMapper objectMapper, Clock clock,
+                          OutboxFastPath fastPath, OutboxMetrics metrics) {
         this.repository = repository;
+        this.jdbc = jdbc;
         this.objectMapper = objectMapper;
         this.clock = clock;
+        this.fastPath = fastPath;
+        this.metrics = metrics;
     }
 
     /**
@@ -30,13 +79,99 @@ public class OutboxAppender {
      * @param event   the event payload, serialized to JSON
      */
     public void append(String eventId, String topic, String key, Object event) {
+        OutboxEntry entry = new OutboxEntry(eventId, topic, key, serialize(event),
+                event.getClass().getSimpleName(), stamp(1));
+        repository.save(entry);
+        if (metrics != null) {
+            metrics.appended(topic);
+        }
+        publishAfterCommit(List.of(eventId));
+    }
+
+    /**
+     * Appends many events in one JDBC batch, stamped with creation times that
+     * increase in list order. Same transaction rules as {@link #append}; the batch
+     * runs on the transaction's own connection, bypassing the persistence context.
+     */
+    public void appendAll(List<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Instant first = stamp(messages.size());
+        List<OutboxEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            OutboxMessage message = messages.get(i);
+            entries.add(new OutboxEntry(message.eventId(), message.topic(), message.key(),
+                    serialize(message.event()), message.event().getClass().getSimpleName(),
+                    first.plus(i, ChronoUnit.MICROS)));
+        }
+        if (jdbc == null) {
+            repository.saveAll(entries);
+        } else {
+            jdbc.batchUpdate(INSERT, entries, entries.size(), (statement, entry) -> {
+                statement.setString(1, entry.getId());
+                statement.setString(2, entry.getTopic());
+                statement.setString(3, entry.getMessageKey());
+                statement.setString(4, entry.getPayload());
+                statement.setString(5, entry.getType());
+                statement.setObject(6, entry.getCreatedAt().atOffset(ZoneOffset.UTC));
+            });
+        }
+        List<String> ids = new ArrayList<>(entries.size());
+        for (OutboxEntry entry : entries) {
+            if (metrics != null) {
+                metrics.appended(entry.getTopic());
+            }
+            ids.add(entry.getId());
+        }
+        publishAfterCommit(ids);
+    }
+
+    /**
+     * Reserves {@code count} consecutive microsecond stamps, from now or, if the
+     * clock has not passed the last one handed out, right after it, and returns the first.
+     */
+    private Instant stamp(int count) {
+        long now = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now(clock));
+        long last = lastStampMicros.updateAndGet(previous -> Math.max(now, previous + 1) + count - 1);
+        return Instant.EPOCH.plus(last - count + 1, ChronoUnit.MICROS);
+    }
+
+    private String serialize(Object event) {
         try {
-            String payload = objectMapper.writeValueAsString(event);
-            OutboxEntry entry = new OutboxEntry(eventId, topic, key, payload,
-                    event.getClass().getSimpleName(), Instant.now(clock));
-            repository.save(entry);
+            return writers.computeIfAbsent(event.getClass(), objectMapper::writerFor).writeValueAsString(event);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Could not serialize outbox event " + event.getClass(), e);
         }
     }
+
+    /**
+     * Collects the transaction's appended ids under a resource keyed by this
+     * appender and registers one synchronization that hands them all to the fast
+     * path after commit. A rollback discards them with the rows.
+     */
+    private void publishAfterCommit(List<String> eventIds) {
+        if (fastPath == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<String> ids = (List<String>) TransactionSynchronizationManager.getResource(this);
+        if (ids == null) {
+            List<String> appended = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, appended);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fastPath.publish(appended);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxAppender.this);
+                }
+            });
+            ids = appended;
+        }
+        ids.addAll(eventIds);
+    }
 }
@@ -0,0 +1,33 @@
+package com.virtualbank.common.outbox;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for rows the relay could not publish. The n-th
+ * failure waits {@code initial * multiplier^(n-1)}, capped at {@code max}, and
+ * then randomized down by up to the jitter fraction so rows that failed together
+ * (a broker outage) do not all come back in the same pass.
+ */
+public class OutboxBackoff {
+
+    private final OutboxProperties.Retry retry;
+
+    public OutboxBackoff(OutboxProperties.Retry retry) {
+        this.retry = retry;
+    }
+
+    /** When a row that has now failed {@code attempts} times may be tried again. */
+    public Instant nextAttempt(Instant now, int attempts) {
+        double exponential = retry.getInitialBackoffMs()
+                * Math.pow(retry.getMultiplier(), Math.max(0, attempts - 1));
+        double capped = Math.min(exponential, retry.getMaxBackoffMs());
+        double jitter = retry.getJitter() * ThreadLocalRandom.current().nextDouble();
+        return now.plus(Duration.ofMillis(Math.round(capped * (1.0 - jitter))));
+    }
+
+    public int maxAttempts() {
+        return retry.getMaxAttempts();
+    }
+}
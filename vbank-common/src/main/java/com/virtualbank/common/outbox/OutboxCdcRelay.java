@@ -0,0 +1,273 @@
+package com.virtualbank.common.outbox;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes outbox rows by tailing Postgres logical replication instead of
+ * polling. Inserts into {@code outbox} are decoded from a pgoutput replication
+ * slot subscribed to the {@value #PUBLICATION} publication, sent to Kafka in WAL
+ * (commit) order, and the slot's position is confirmed only once the broker has
+ * acknowledged everything before it. The relay never reads or updates the table,
+ * so the primary carries no claim queries or sent-marking writes, and an event
+ * typically reaches the broker a few milliseconds after its transaction commits.
+ *
+ * <p>Delivery is at-least-once, as with the polling relay: when a send fails or
+ * the connection drops, the relay reconnects and the server replays everything
+ * after the last confirmed position. Sends that share a message key are never
+ * outstanding together, so per-key order survives a retry. Only one connection
+ * can stream a slot at a time; other replicas keep retrying and take over when
+ * the active one goes away.
+ *
+ * <p>Needs {@code wal_level=logical} and a user with the REPLICATION attribute.
+ * The slot is created on first start and only streams what is inserted from then
+ * on, so switch an existing service over with its outbox drained. Sent rows keep
+ * a null {@code sent_at}; partition retention drops a day only once this slot has
+ * confirmed WAL past every insert into it. Messages are read by
+ * {@link PgOutputDecoder}. Enabled by
+ * {@code vbank.outbox.mode=cdc}, which replaces the polling relay, the
+ * LISTEN/NOTIFY listener and the fast path. Ack latency is recorded from the
+ * row's {@code created_at} through {@link OutboxMetrics}.
+ */
+public class OutboxCdcRelay implements SmartLifecycle {
+
+    /** The publication the relay streams; must match the V7__outbox_publication migration. */
+    public static final String PUBLICATION = "vbank_outbox";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxCdcRelay.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String slotName;
+    private final KafkaTemplate<String, String> kafka;
+    private final OutboxProperties properties;
+    private final OutboxMetrics metrics;
+
+    private final PgOutputDecoder decoder = new PgOutputDecoder();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public OutboxCdcRelay(String url, String username, String password, String slotName,
+                          KafkaTemplate<String, String> kafka, OutboxProperties properties, OutboxMetrics metrics) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.slotName = slotName;
+        this.kafka = kafka;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform().name("outbox-cdc").daemon().start(this::streamLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void streamLoop() {
+        while (running) {
+            try (Connection connection = connect()) {
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                ensureSlot(connection, pg);
+                try (PGReplicationStream stream = pg.getReplicationAPI()
+                        .replicationStream()
+                        .logical()
+                        .withSlotName(slotName)
+                        .withSlotOption("proto_version", 1)
+                        .withSlotOption("publication_names", PUBLICATION)
+                        .withStatusInterval((int) properties.getCdc().getStatusIntervalMs(), TimeUnit.MILLISECONDS)
+                        .start()) {
+                    log.info("Outbox CDC relay streaming slot {}", slotName);
+                    decoder.reset();
+                    consume(stream);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Outbox CDC relay stopped streaming slot {}, reconnecting", slotName, e);
+                    pause(properties.getCdc().getReconnectDelayMs());
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, username);
+        PGProperty.PASSWORD.set(props, password);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "10");
+        PGProperty.REPLICATION.set(props, "database");
+        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+        return DriverManager.getConnection(url, props);
+    }
+
+    private void ensureSlot(Connection connection, PGConnection pg) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select 1 from pg_replication_slots where slot_name = ?")) {
+            statement.setString(1, slotName);
+            try (ResultSet rows = statement.executeQuery()) {
+                if (rows.next()) {
+                    return;
+                }
+            }
+        }
+        pg.getReplicationAPI()
+                .createReplicationSlot()
+                .logical()
+                .withSlotName(slotName)
+                .withOutputPlugin("pgoutput")
+                .make();
+        log.info("Created outbox replication slot {}", slotName);
+    }
+
+    /**
+     * Reads the stream until the relay stops. Sends are fired as inserts arrive
+     * and collected whenever the stream goes quiet, the window reaches
+     * max-in-flight, or a key repeats; only then is the position confirmed.
+     */
+    private void consume(PGReplicationStream stream) throws SQLException {
+        Window window = new Window();
+        while (running) {
+            ByteBuffer message = stream.readPending();
+            if (message == null) {
+                flush(stream, window, true);
+                pause(properties.getCdc().getIdleWaitMs());
+                continue;
+            }
+            switch (decoder.decode(message)) {
+                case PgOutputDecoder.Begin begin -> window.inTransaction = true;
+                case PgOutputDecoder.Commit commit -> {
+                    window.committed = commit.end();
+                    window.inTransaction = false;
+                }
+                case PgOutputDecoder.Insert insert -> {
+                    PgOutputDecoder.Row row = insert.row();
+                    if (window.keys.contains(row.key()) || window.sends.size() >= properties.getMaxInFlight()) {
+                        flush(stream, window, false);
+                    }
+                    window.keys.add(row.key());
+                    window.sends.add(send(row));
+                }
+                case null -> {
+                    // Relation descriptions and messages that carry nothing to publish.
+                }
+            }
+        }
+    }
+
+    private Pending send(PgOutputDecoder.Row row) {
+        CompletableFuture<?> ack = kafka.send(row.topic(), row.key(), row.payload())
+                .whenComplete((result, error) -> {
+                    if (error == null && row.createdAt() != null) {
+                        metrics.published(row.topic(), row.createdAt());
+                    }
+                });
+        return new Pending(row.id(), row.topic(), ack);
+    }
+
+    /**
+     * Waits for the window's acknowledgements and confirms the end of the last
+     * complete transaction. When the stream is idle and no transaction is open,
+     * everything received has been handled, so the last received position
+     * (which keepalives move forward) is confirmed instead; that keeps the slot
+     * from holding back WAL while the outbox is quiet.
+     */
+    private void flush(PGReplicationStream stream, Window window, boolean idle) throws SQLException {
+        if (!window.sends.isEmpty()) {
+            metrics.batch(window.sends.size());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getSendTimeoutMs());
+        for (Pending send : window.sends) {
+            try {
+                send.ack().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Outbox CDC relay interrupted while publishing " + send.id(), e);
+            } catch (ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                metrics.failedAttempt(send.topic());
+                throw new IllegalStateException("Outbox CDC relay could not publish " + send.id()
+                        + ", replaying from " + window.confirmed, cause);
+            }
+        }
+        window.sends.clear();
+        window.keys.clear();
+
+        LogSequenceNumber position = window.committed;
+        if (idle && !window.inTransaction) {
+            position = later(position, stream.getLastReceiveLSN());
+        }
+        if (position != null && later(window.confirmed, position) != window.confirmed) {
+            stream.setAppliedLSN(position);
+            stream.setFlushedLSN(position);
+            stream.forceUpdateStatus();
+            window.confirmed = position;
+        }
+    }
+
+    private static LogSequenceNumber later(LogSequenceNumber a, LogSequenceNumber b) {
+        if (a == null || a == LogSequenceNumber.INVALID_LSN) {
+            return b;
+        }
+        if (b == null || b == LogSequenceNumber.INVALID_LSN) {
+            return a;
+        }
+        return Long.compareUnsigned(b.asLong(), a.asLong()) > 0 ? b : a;
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Sends since the last confirmation, and the positions the relay has reached and confirmed. */
+    private static final class Window {
+        final List<Pending> sends = new ArrayList<>();
+        final Set<String> keys = new HashSet<>();
+        LogSequenceNumber committed;
+        LogSequenceNumber confirmed;
+        boolean inTransaction;
+    }
+
+    private record Pending(String id, String topic, CompletableFuture<?> ack) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.virtualbank.common.outbox;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@code /actuator/outbox}: lists the rows the relay has parked after too many
+ * failed attempts and replays them. {@code GET} shows the parked rows oldest
+ * first, {@code POST /actuator/outbox/{id}} replays one, and
+ * {@code POST /actuator/outbox} replays them all. A replayed row gets a fresh
+ * attempt budget and is picked up by the next relay pass.
+ */
+@Endpoint(id = "outbox")
+public class OutboxEndpoint {
+
+    private static final int MAX_LISTED = 200;
+
+    private final OutboxRepository repository;
+    private final TransactionTemplate transactions;
+
+    public OutboxEndpoint(OutboxRepository repository, TransactionTemplate transactions) {
+        this.repository = repository;
+        this.transactions = transactions;
+    }
+
+    @ReadOperation
+    public List<ParkedEntry> parked() {
+        return repository.findByParkedAtIsNotNullOrderByCreatedAtAsc(Limit.of(MAX_LISTED)).stream()
+                .map(ParkedEntry::of)
+                .toList();
+    }
+
+    @WriteOperation
+    public Replayed replayAll() {
+        return new Replayed(transactions.execute(status -> repository.unparkAll()));
+    }
+
+    @WriteOperation
+    public Replayed replay(@Selector String id) {
+        return new Replayed(transactions.execute(status -> repository.unpark(id)));
+    }
+
+    /** A parked row as shown to an operator; the payload is left out because it can carry customer data. */
+    public record ParkedEntry(String id, String topic, String messageKey, String type, int attempts,
+                              String lastError, Instant createdAt, Instant parkedAt) {
+
+        static ParkedEntry of(OutboxEntry entry) {
+            return new ParkedEntry(entry.getId(), entry.getTopic(), entry.getMessageKey(), entry.getType(),
+                    entry.getAttempts(), entry.getLastError(), entry.getCreatedAt(), entry.getParkedAt());
+        }
+    }
+
+    public record Replayed(int replayed) {
+    }
+}
@@ -3,7 +3,11 @@ package com.virtualbank.common.outbox;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
 
 import java.time.Instant;
 
@@ -13,10 +17,16 @@ import java.time.Instant;
  * never lost and never published without its state change committing. A polling
  * {@link OutboxRelay} forwards unsent rows to Kafka. The id is the message's
  * eventId, which the consumer uses for idempotent processing.
+ *
+ * <p>A row that fails to publish backs off exponentially ({@code nextAttemptAt})
+ * and is parked after too many attempts, so a poison row stops competing with
+ * healthy traffic for the relay's batch.
  */
 @Entity
 @Table(name = "outbox")
-public class OutboxEntry {
+public class OutboxEntry implements Persistable<String> {
+
+    private static final int MAX_ERROR_LENGTH = 512;
 
     @Id
     private String id;
@@ -42,6 +52,18 @@ public class OutboxEntry {
     @Column(nullable = false)
     private int attempts;
 
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "parked_at")
+    private Instant parkedAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Transient
+    private boolean isNew = true;
+
     protected OutboxEntry() {
     }
 
@@ -59,14 +81,48 @@ public class OutboxEntry {
         this.sentAt = when;
     }
 
-    public void recordFailedAttempt() {
+    /**
+     * Records a failed publish. The row is not retried before {@code retryAt}; once
+     * it has failed {@code maxAttempts} times it is parked instead and left alone
+     * until it is replayed.
+     */
+    public void recordFailedAttempt(Instant now, Instant retryAt, int maxAttempts, String error) {
         this.attempts++;
+        this.lastError = error == null || error.length() <= MAX_ERROR_LENGTH
+                ? error
+                : error.substring(0, MAX_ERROR_LENGTH);
+        if (attempts >= maxAttempts) {
+            this.parkedAt = now;
+        } else {
+            this.nextAttemptAt = retryAt;
+        }
     }
 
+    public boolean isParked() {
+        return parkedAt != null;
+    }
+
+    @Override
     public String getId() {
         return id;
     }
 
+    /**
+     * A row built by the appender is always new, so saving it is a plain insert.
+     * Without this Spring Data would see the assigned id and merge, which costs a
+     * select by id first, and on the partitioned table that probes every partition.
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
     public String getTopic() {
         return topic;
     }
@@ -94,4 +150,16 @@ public class OutboxEntry {
     public int getAttempts() {
         return attempts;
     }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public Instant getParkedAt() {
+        return parkedAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
 }
@@ -0,0 +1,66 @@
+package com.virtualbank.common.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Publishes freshly committed outbox rows straight away instead of waiting for
+ * the relay to find them. {@link OutboxAppender} hands over the ids it appended
+ * once the producing transaction commits; each hand-over runs on its own virtual
+ * thread and goes through {@link OutboxRelay#publishClaimed(List)}, which claims
+ * the rows exactly as a relay pass would, so the fast path and the relay never
+ * publish the same row twice and per-key order still holds.
+ *
+ * <p>Nothing is lost when the fast path cannot help: if every slot is busy, the
+ * broker is down, or the service stops mid-send, the rows stay unsent and the
+ * relay picks them up. Enabled by {@code vbank.outbox.fast-path.enabled=true}.
+ */
+public class OutboxFastPath implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxFastPath.class);
+
+    private final OutboxRelay relay;
+    private final Semaphore slots;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OutboxFastPath(OutboxRelay relay, OutboxProperties properties) {
+        this.relay = relay;
+        this.slots = new Semaphore(Math.max(1, properties.getFastPath().getMaxConcurrency()));
+    }
+
+    /**
+     * Publishes the given rows in the background. Called after commit, so it must
+     * never throw back into the committing thread. When all slots are taken the
+     * rows are simply left to the relay rather than queued, which keeps a burst
+     * from holding more database connections than the slot count.
+     */
+    public void publish(List<String> ids) {
+        if (ids.isEmpty() || !slots.tryAcquire()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    relay.publishClaimed(ids);
+                } catch (RuntimeException e) {
+                    log.debug("Outbox fast path could not publish {}, leaving them to the relay", ids, e);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
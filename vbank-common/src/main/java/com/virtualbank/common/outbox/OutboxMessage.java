@@ -0,0 +1,8 @@
+package com.virtualbank.common.outbox;
+
+/**
+ * One event for {@link OutboxAppender#appendAll(java.util.List)}; the fields mean
+ * the same as the arguments of {@link OutboxAppender#append(String, String, String, Object)}.
+ */
+public record OutboxMessage(String eventId, String topic, String key, Object event) {
+}
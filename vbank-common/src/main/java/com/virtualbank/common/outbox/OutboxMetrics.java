@@ -0,0 +1,141 @@
+package com.virtualbank.common.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Micrometer instrumentation for the outbox, every meter tagged with the
+ * service and, where it applies, the topic:
+ * <ul>
+ *   <li>{@code vbank.outbox.appended}: rows written by the appender</li>
+ *   <li>{@code vbank.outbox.publish.latency}: time from a row's {@code created_at} to the broker ack,
+ *       published as a histogram so percentiles can be computed across replicas</li>
+ *   <li>{@code vbank.outbox.failed.attempts}: sends that failed and were scheduled for a retry or parked</li>
+ *   <li>{@code vbank.outbox.batch.size}: rows taken per relay pass</li>
+ *   <li>{@code vbank.outbox.unsent}, {@code vbank.outbox.parked} and {@code vbank.outbox.oldest.unsent.age}:
+ *       the backlog, read from the table on a schedule</li>
+ * </ul>
+ * The backlog gauges come from one grouped query every
+ * {@code vbank.outbox.metrics.backlog-refresh-ms}, so scraping never touches the
+ * database; the age is computed at scrape time from the oldest row seen. In CDC
+ * mode rows are never marked sent, so the backlog gauges are not registered and
+ * the latency timer is the lag signal.
+ */
+public class OutboxMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxMetrics.class);
+
+    private final MeterRegistry registry;
+    private final OutboxRepository repository;
+    private final Clock clock;
+    private final String service;
+    private final DistributionSummary batchSize;
+    private final MultiGauge unsent;
+    private final MultiGauge parked;
+    private final MultiGauge oldestAge;
+
+    /**
+     * @param repository where the backlog is read from; null when the backlog is not tracked (CDC mode)
+     */
+    public OutboxMetrics(MeterRegistry registry, OutboxRepository repository, Clock clock, String service) {
+        this.registry = registry;
+        this.repository = repository;
+        this.clock = clock;
+        this.service = service;
+        this.batchSize = DistributionSummary.builder("vbank.outbox.batch.size")
+                .description("Rows taken by one relay pass")
+                .tag("service", service)
+                .publishPercentileHistogram()
+                .register(registry);
+        if (repository != null) {
+            this.unsent = MultiGauge.builder("vbank.outbox.unsent")
+                    .description("Unsent rows waiting for the relay, parked rows excluded")
+                    .tag("service", service)
+                    .register(registry);
+            this.parked = MultiGauge.builder("vbank.outbox.parked")
+                    .description("Rows parked after too many failed attempts")
+                    .tag("service", service)
+                    .register(registry);
+            this.oldestAge = MultiGauge.builder("vbank.outbox.oldest.unsent.age")
+                    .description("Age of the oldest unsent, unparked row")
+                    .baseUnit("seconds")
+                    .tag("service", service)
+                    .register(registry);
+        } else {
+            this.unsent = null;
+            this.parked = null;
+            this.oldestAge = null;
+        }
+    }
+
+    public void appended(String topic) {
+        Counter.builder("vbank.outbox.appended")
+                .description("Rows written to the outbox")
+                .tags("service", service, "topic", topic)
+                .register(registry)
+                .increment();
+    }
+
+    /** A row the broker has acknowledged; the latency runs from when it was appended. */
+    public void published(String topic, Instant createdAt) {
+        Timer.builder("vbank.outbox.publish.latency")
+                .description("Time from appending an outbox row to the broker acknowledging it")
+                .tags("service", service, "topic", topic)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(Duration.between(createdAt, Instant.now(clock)));
+    }
+
+    public void failedAttempt(String topic) {
+        Counter.builder("vbank.outbox.failed.attempts")
+                .description("Outbox sends that failed")
+                .tags("service", service, "topic", topic)
+                .register(registry)
+                .increment();
+    }
+
+    public void batch(int size) {
+        batchSize.record(size);
+    }
+
+    @Scheduled(initialDelayString = "${vbank.outbox.metrics.backlog-refresh-ms:15000}",
+            fixedDelayString = "${vbank.outbox.metrics.backlog-refresh-ms:15000}")
+    public void refreshBacklog() {
+        if (repository == null) {
+            return;
+        }
+        List<OutboxRepository.TopicBacklog> backlog;
+        try {
+            backlog = repository.backlogByTopic();
+        } catch (RuntimeException e) {
+            log.debug("Could not read the outbox backlog", e);
+            return;
+        }
+        unsent.register(backlog.stream()
+                .map(row -> MultiGauge.Row.of(Tags.of("topic", row.getTopic()), row.getUnsent()))
+                .toList(), true);
+        parked.register(backlog.stream()
+                .map(row -> MultiGauge.Row.of(Tags.of("topic", row.getTopic()), row.getParked()))
+                .toList(), true);
+        oldestAge.register(backlog.stream()
+                .filter(row -> row.getOldest() != null)
+                .map(row -> MultiGauge.Row.of(Tags.of("topic", row.getTopic()), row.getOldest(), this::ageSeconds))
+                .toList(), true);
+    }
+
+    private double ageSeconds(Instant since) {
+        return Math.max(0, Duration.between(since, Instant.now(clock)).toMillis() / 1000.0);
+    }
+}
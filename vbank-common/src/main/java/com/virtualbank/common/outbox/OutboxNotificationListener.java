@@ -0,0 +1,110 @@
+package com.virtualbank.common.outbox;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Drives the {@link OutboxRelay} from Postgres LISTEN/NOTIFY instead of waiting
+ * for the next poll. The outbox table carries a trigger that notifies
+ * {@value #CHANNEL} when an inserting transaction commits; this listener holds
+ * one connection listening on that channel and drains the outbox the moment a
+ * notification arrives, so an event's dwell time in the outbox drops from half
+ * the poll interval to a few milliseconds.
+ *
+ * <p>The scheduled poll keeps running as a slow safety net for anything a lost
+ * connection might miss, and the listener drains once after every (re)connect
+ * for the same reason. Enabled by {@code vbank.outbox.notify.enabled=true}.
+ */
+public class OutboxNotificationListener implements SmartLifecycle {
+
+    /** The channel the outbox trigger notifies; must match the V4__outbox_notify migration. */
+    public static final String CHANNEL = "vbank_outbox";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxNotificationListener.class);
+
+    private final DataSource dataSource;
+    private final OutboxRelay relay;
+    private final OutboxProperties properties;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public OutboxNotificationListener(DataSource dataSource, OutboxRelay relay, OutboxProperties properties) {
+        this.dataSource = dataSource;
+        this.relay = relay;
+        this.properties = properties;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform().name("outbox-listener").daemon().start(this::listenLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                log.info("Outbox relay listening on {}", CHANNEL);
+                drain();
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(
+                            (int) properties.getNotify().getListenTimeoutMs());
+                    if (notifications != null && notifications.length > 0) {
+                        drain();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Outbox listener lost its connection, reconnecting", e);
+                    pause(properties.getNotify().getReconnectDelayMs());
+                }
+            }
+        }
+    }
+
+    /** Keeps publishing while the relay is taking full batches, so a burst is drained in one wake-up. */
+    private void drain() {
+        int batchSize = properties.getBatchSize();
+        try {
+            while (running && relay.publishBatch() >= batchSize) {
+                // keep going until a partial batch shows the backlog is empty
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox drain failed, the poll will retry", e);
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
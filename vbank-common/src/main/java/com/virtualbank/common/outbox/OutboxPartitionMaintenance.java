@@ -0,0 +1,225 @@
+package com.virtualbank.common.outbox;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the day-partitioned outbox table in shape: creates tomorrow's partitions
+ * before they are needed, and detaches and drops partitions older than the
+ * retention window once every row in them has been sent: marked sent by the
+ * polling relay, or confirmed by the CDC relay's replication slot. Dropping a partition
+ * removes a whole day without a DELETE or a vacuum, so the table stays roughly
+ * retention-days of traffic in size and the relay's queries stay flat.
+ *
+ * <p>Nothing here holds an ACCESS EXCLUSIVE lock on {@code outbox}, which would
+ * stall every append and every relay claim behind it. New partitions are created
+ * standalone and attached, which only takes SHARE UPDATE EXCLUSIVE on the parent,
+ * and expired ones are detached with {@code DETACH PARTITION ... CONCURRENTLY}
+ * before they are dropped. A concurrent detach cannot run inside a transaction,
+ * so the job runs statement by statement on one autocommit connection; a detach
+ * interrupted half way is left pending and finished on the next run.
+ *
+ * <p>Every replica runs this job; a session advisory lock lets one instance do
+ * the work per run and the others skip it. The table's total size
+ * is exported as the {@code vbank.outbox.table.size} gauge. The job expects the
+ * V6 partitioning migration and an outbox with no default partition (V15 in
+ * account-service, V10 in transaction-service drop it), since Postgres refuses a
+ * concurrent detach while one exists. Without a default partition an append
+ * fails unless its day exists, so the job is on unless
+ * {@code vbank.outbox.partitions.enabled=false}, and that only suits a database
+ * whose partitions something else creates.
+ */
+public class OutboxPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxPartitionMaintenance.class);
+
+    private static final String PARTITION_PREFIX = "outbox_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final long ADVISORY_LOCK_KEY = 0x6f7574626f78L; // "outbox"
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final OutboxProperties.Partitions settings;
+    private final String cdcSlotName;
+    private final AtomicLong tableSizeBytes = new AtomicLong();
+
+    /** WAL positions each expired partition's last insert is known to precede, by partition. */
+    private final Map<String, String> fences = new HashMap<>();
+
+    /**
+     * @param cdcSlotName the CDC relay's replication slot, which must have confirmed a partition
+     *                    before it is dropped; null when the polling relay marks rows sent
+     */
+    public OutboxPartitionMaintenance(JdbcTemplate jdbc, Clock clock,
+                                      OutboxProperties.Partitions settings, String cdcSlotName,
+                                      MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.settings = settings;
+        this.cdcSlotName = cdcSlotName;
+        if (meterRegistry != null) {
+            Gauge.builder("vbank.outbox.table.size", tableSizeBytes, AtomicLong::get)
+                    .description("Total size of the outbox table and its partitions, including indexes and TOAST")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${vbank.outbox.partitions.initial-delay-ms:10000}",
+            fixedDelayString = "${vbank.outbox.partitions.interval-ms:3600000}")
+    public void maintain() {
+        try {
+            jdbc.execute((ConnectionCallback<Void>) connection -> {
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                Boolean locked = session.queryForObject("select pg_try_advisory_lock(?)",
+                        Boolean.class, ADVISORY_LOCK_KEY);
+                if (!Boolean.TRUE.equals(locked)) {
+                    return null;
+                }
+                try {
+                    // Never queue behind the relay for long; the next run tries again.
+                    session.execute("set lock_timeout = '5s'");
+                    LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+                    finishPendingDetaches(session);
+                    createAhead(session, today);
+                    dropExpired(session, today.minusDays(settings.getRetentionDays()));
+                } finally {
+                    session.execute("reset lock_timeout");
+                    session.queryForObject("select pg_advisory_unlock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Outbox partition maintenance failed, will retry on the next run", e);
+        }
+        refreshTableSize();
+    }
+
+    private void createAhead(JdbcTemplate session, LocalDate today) {
+        for (int i = 0; i <= settings.getPremakeDays(); i++) {
+            LocalDate day = today.plusDays(i);
+            String partition = partitionName(day);
+            if (session.queryForObject("select to_regclass(?)", String.class, partition) != null) {
+                continue;
+            }
+            session.execute("create table " + partition
+                    + " (like outbox including defaults including constraints)");
+            session.execute("alter table outbox attach partition " + partition
+                    + " for values from ('" + day + " 00:00:00+00') to ('" + day.plusDays(1) + " 00:00:00+00')");
+        }
+    }
+
+    /** Completes detaches a previous run started but did not see through, say because it was killed. */
+    private void finishPendingDetaches(JdbcTemplate session) {
+        List<String> pending = session.queryForList("""
+                select c.relname from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'outbox'::regclass and i.inhdetachpending
+                """, String.class);
+        for (String partition : pending) {
+            session.execute("alter table outbox detach partition " + partition + " finalize");
+            session.execute("drop table " + partition);
+            log.info("Finished detaching and dropped outbox partition {}", partition);
+        }
+    }
+
+    private void dropExpired(JdbcTemplate session, LocalDate cutoff) {
+        List<String> partitions = session.queryForList("""
+                select c.relname from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'outbox'::regclass and c.relname like 'outbox\\_p%'
+                order by c.relname
+                """, String.class);
+        for (String partition : partitions) {
+            LocalDate day = dayOf(partition);
+            if (day == null || !day.isBefore(cutoff)) {
+                continue;
+            }
+            if (cdcSlotName == null && Boolean.TRUE.equals(session.queryForObject(
+                    "select exists (select 1 from " + partition + " where sent_at is null)", Boolean.class))) {
+                log.warn("Outbox partition {} is past retention but still holds unsent rows, keeping it", partition);
+                continue;
+            }
+            if (cdcSlotName != null && !confirmedBySlot(session, partition, day)) {
+                continue;
+            }
+            // Waits out transactions already reading outbox instead of locking them out.
+            session.execute("alter table outbox detach partition " + partition + " concurrently");
+            session.execute("drop table " + partition);
+            fences.remove(partition);
+            log.info("Dropped outbox partition {}", partition);
+        }
+    }
+
+    /**
+     * Whether the CDC relay has published everything in {@code partition}. Its rows
+     * are never marked sent, so this goes by WAL position instead: once no
+     * transaction that started before the partition's day ended is still open,
+     * every insert into it lies before the current WAL position, which is noted as
+     * its fence. The partition may go once the slot's confirmed_flush_lsn has
+     * passed the fence. Fences live in memory, so a restart or another replica
+     * winning the lock only delays a drop by a run.
+     */
+    private boolean confirmedBySlot(JdbcTemplate session, String partition, LocalDate day) {
+        String fence = fences.get(partition);
+        if (fence == null) {
+            fence = session.query("""
+                    select pg_current_wal_lsn()::text
+                    where not exists (select 1 from pg_stat_activity where xact_start < ?::timestamptz)
+                    """, rs -> rs.next() ? rs.getString(1) : null, day.plusDays(1) + " 00:00:00+00");
+            if (fence != null) {
+                fences.put(partition, fence);
+            }
+            // Even a fresh fence has to be confirmed by the relay first; look again next run.
+            return false;
+        }
+        Boolean confirmed = session.query(
+                "select confirmed_flush_lsn >= ?::pg_lsn from pg_replication_slots where slot_name = ?",
+                rs -> rs.next() ? (Boolean) rs.getObject(1) : null, fence, cdcSlotName);
+        if (!Boolean.TRUE.equals(confirmed)) {
+            log.warn("Outbox partition {} is past retention but replication slot {} has not confirmed it{}, "
+                    + "keeping it", partition, cdcSlotName, confirmed == null ? " (slot missing)" : "");
+            return false;
+        }
+        return true;
+    }
+
+    private void refreshTableSize() {
+        try {
+            Long size = jdbc.queryForObject("""
+                    select coalesce(sum(pg_total_relation_size(i.inhrelid)), 0)
+                    from pg_inherits i where i.inhparent = 'outbox'::regclass
+                    """, Long.class);
+            tableSizeBytes.set(size == null ? 0 : size);
+        } catch (RuntimeException e) {
+            log.debug("Could not read the outbox table size", e);
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + SUFFIX.format(day);
+    }
+
+    private static LocalDate dayOf(String partition) {
+        try {
+            return LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), SUFFIX);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
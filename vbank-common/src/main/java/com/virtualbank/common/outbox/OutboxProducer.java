@@ -0,0 +1,90 @@
+package com.virtualbank.common.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The relay's own Kafka producer, used instead of the auto-configured template
+ * when {@code vbank.outbox.producer.enabled=true}. It is idempotent (acks=all,
+ * unbounded retries), so a send retried after a lost ack does not land twice in
+ * the partition, and it lingers and compresses (zstd by default) so a relay batch
+ * leaves as a few large broker requests. The producer's own metrics, batch size
+ * and compression rate among them, are bound to Micrometer.
+ *
+ * <p>With {@code vbank.outbox.producer.transactional=true} the polling relay
+ * wraps each batch in a Kafka transaction; consumers then need
+ * {@code isolation.level=read_committed} to skip aborted batches, and the
+ * service will not start with the flag on while its own consumers read
+ * uncommitted. Held in this wrapper rather than registered as a KafkaTemplate
+ * bean so the service's own template injection points stay unambiguous.
+ */
+public class OutboxProducer implements ApplicationContextAware, SmartInitializingSingleton, DisposableBean {
+
+    private final DefaultKafkaProducerFactory<String, String> factory;
+    private final KafkaTemplate<String, String> template;
+
+    /**
+     * @param base                 the service's producer configuration, overridden here where the outbox needs it
+     * @param transactionIdPrefix  non-null to make the producer transactional
+     * @param observationEnabled   whether sends are observed for tracing, as for the service's own template
+     */
+    public OutboxProducer(Map<String, Object> base, OutboxProperties.Producer settings, String transactionIdPrefix,
+                          boolean observationEnabled, MeterRegistry meterRegistry, String service) {
+        Map<String, Object> config = new HashMap<>(base);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+        config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, settings.getLingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, settings.getBatchSize());
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, settings.getCompressionType());
+        this.factory = new DefaultKafkaProducerFactory<>(config);
+        if (transactionIdPrefix != null) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        if (meterRegistry != null) {
+            factory.addListener(new MicrometerProducerListener<>(meterRegistry,
+                    List.of(Tag.of("service", service), Tag.of("producer", "outbox"))));
+        }
+        this.template = new KafkaTemplate<>(factory);
+        // The CDC relay streams without transactions even when the polling relay uses them.
+        template.setAllowNonTransactional(true);
+        template.setObservationEnabled(observationEnabled);
+    }
+
+    public KafkaTemplate<String, String> template() {
+        return template;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        factory.setApplicationContext(applicationContext);
+        template.setApplicationContext(applicationContext);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Picks up the ObservationRegistry, as the auto-configured template does for itself.
+        template.afterSingletonsInstantiated();
+    }
+
+    @Override
+    public void destroy() {
+        factory.destroy();
+    }
+}
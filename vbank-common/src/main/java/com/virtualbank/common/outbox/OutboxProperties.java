@@ -0,0 +1,398 @@
+package com.virtualbank.common.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning for the transactional outbox, bound from {@code vbank.outbox.*}. The
+ * defaults suit the single-broker development setup; a service under heavy load
+ * raises the batch size and in-flight limit.
+ */
+@ConfigurationProperties(prefix = "vbank.outbox")
+public class OutboxProperties {
+
+    /** Whether the outbox is wired at all. Read by the auto-configuration condition. */
+    private boolean enabled;
+
+    /** How rows reach Kafka: the polling {@link OutboxRelay} or the {@link OutboxCdcRelay}. */
+    private Mode mode = Mode.POLL;
+
+    /** Delay between relay polls, in milliseconds. */
+    private long pollIntervalMs = 500;
+
+    /** Most rows the relay takes from the outbox in one pass. */
+    private int batchSize = 100;
+
+    /** Most sends the relay keeps outstanding at the broker at once. */
+    private int maxInFlight = 100;
+
+    /** How long the relay waits for a batch's acknowledgements before giving up on the stragglers. */
+    private long sendTimeoutMs = 10_000;
+
+    private final Notify notify = new Notify();
+
+    private final FastPath fastPath = new FastPath();
+
+    private final Retry retry = new Retry();
+
+    private final Partitions partitions = new Partitions();
+
+    private final Cdc cdc = new Cdc();
+
+    private final Producer producer = new Producer();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public long getSendTimeoutMs() {
+        return sendTimeoutMs;
+    }
+
+    public void setSendTimeoutMs(long sendTimeoutMs) {
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    public Notify getNotify() {
+        return notify;
+    }
+
+    public FastPath getFastPath() {
+        return fastPath;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public Partitions getPartitions() {
+        return partitions;
+    }
+
+    public Cdc getCdc() {
+        return cdc;
+    }
+
+    public Producer getProducer() {
+        return producer;
+    }
+
+    public enum Mode {
+        /** Claim unsent rows with SELECT ... SKIP LOCKED and mark them sent. */
+        POLL,
+        /** Stream inserts from a logical replication slot; rows are never updated. */
+        CDC
+    }
+
+    /** The LISTEN/NOTIFY wake-up that lets the relay publish right after a commit. */
+    public static class Notify {
+
+        private boolean enabled;
+
+        /** How long one wait for notifications blocks before the listener checks whether it should stop. */
+        private long listenTimeoutMs = 1_000;
+
+        /** Pause before reopening the listening connection after it drops. */
+        private long reconnectDelayMs = 2_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getListenTimeoutMs() {
+            return listenTimeoutMs;
+        }
+
+        public void setListenTimeoutMs(long listenTimeoutMs) {
+            this.listenTimeoutMs = listenTimeoutMs;
+        }
+
+        public long getReconnectDelayMs() {
+            return reconnectDelayMs;
+        }
+
+        public void setReconnectDelayMs(long reconnectDelayMs) {
+            this.reconnectDelayMs = reconnectDelayMs;
+        }
+    }
+
+    /** The after-commit hand-over that publishes a transaction's rows without waiting for the relay. */
+    public static class FastPath {
+
+        private boolean enabled;
+
+        /** Most fast-path publishes running at once; beyond this, rows wait for the relay. */
+        private int maxConcurrency = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+
+    /** Backoff and parking for rows that fail to publish. */
+    public static class Retry {
+
+        /** Wait after the first failure, in milliseconds. */
+        private long initialBackoffMs = 1_000;
+
+        /** Growth factor applied to the wait on each further failure. */
+        private double multiplier = 2.0;
+
+        /** Upper bound on a single wait, in milliseconds. */
+        private long maxBackoffMs = 300_000;
+
+        /** Fraction (0 to 1) by which a wait is randomly shortened. */
+        private double jitter = 0.5;
+
+        /** Failures after which a row is parked rather than retried. */
+        private int maxAttempts = 12;
+
+        public long getInitialBackoffMs() {
+            return initialBackoffMs;
+        }
+
+        public void setInitialBackoffMs(long initialBackoffMs) {
+            this.initialBackoffMs = initialBackoffMs;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public long getMaxBackoffMs() {
+            return maxBackoffMs;
+        }
+
+        public void setMaxBackoffMs(long maxBackoffMs) {
+            this.maxBackoffMs = maxBackoffMs;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+    }
+
+    /** Daily partitions of the outbox table and how long sent days are kept. */
+    public static class Partitions {
+
+        /**
+         * Whether this instance maintains the partitions. On by default: the outbox
+         * has no default partition, so with nothing creating days ahead every
+         * append fails once the days the migration created run out.
+         */
+        private boolean enabled = true;
+
+        /** Days of fully-sent partitions kept before they are dropped. */
+        private int retentionDays = 7;
+
+        /** Days of partitions created ahead of today. */
+        private int premakeDays = 3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+
+        public int getPremakeDays() {
+            return premakeDays;
+        }
+
+        public void setPremakeDays(int premakeDays) {
+            this.premakeDays = premakeDays;
+        }
+    }
+
+    /** The logical replication stream read by the CDC relay. */
+    public static class Cdc {
+
+        /** Replication slot name; defaults to the application name plus {@code _outbox}. Slots are server-wide. */
+        private String slotName;
+
+        /** How often the relay reports its confirmed position to the server when nothing else does. */
+        private long statusIntervalMs = 10_000;
+
+        /** Pause between reads when the stream has nothing pending. */
+        private long idleWaitMs = 5;
+
+        /** Pause before reconnecting after the stream drops or a send fails. */
+        private long reconnectDelayMs = 2_000;
+
+        public String getSlotName() {
+            return slotName;
+        }
+
+        public void setSlotName(String slotName) {
+            this.slotName = slotName;
+        }
+
+        public long getStatusIntervalMs() {
+            return statusIntervalMs;
+        }
+
+        public void setStatusIntervalMs(long statusIntervalMs) {
+            this.statusIntervalMs = statusIntervalMs;
+        }
+
+        public long getIdleWaitMs() {
+            return idleWaitMs;
+        }
+
+        public void setIdleWaitMs(long idleWaitMs) {
+            this.idleWaitMs = idleWaitMs;
+        }
+
+        public long getReconnectDelayMs() {
+            return reconnectDelayMs;
+        }
+
+        public void setReconnectDelayMs(long reconnectDelayMs) {
+            this.reconnectDelayMs = reconnectDelayMs;
+        }
+    }
+
+    /** The relay's own idempotent producer; off means the relay uses the auto-configured KafkaTemplate. */
+    public static class Producer {
+
+        private boolean enabled;
+
+        /** How long the producer waits to fill a batch before sending it. */
+        private int lingerMs = 10;
+
+        /** Upper bound on one partition batch, in bytes. */
+        private int batchSize = 256 * 1024;
+
+        private String compressionType = "zstd";
+
+        /** Wrap each polling-relay batch in a Kafka transaction. */
+        private boolean transactional;
+
+        /** Transactional id prefix; defaults to the application name plus a per-instance suffix. */
+        private String transactionIdPrefix;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getCompressionType() {
+            return compressionType;
+        }
+
+        public void setCompressionType(String compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public boolean isTransactional() {
+            return transactional;
+        }
+
+        public void setTransactional(boolean transactional) {
+            this.transactional = transactional;
+        }
+
+        public String getTransactionIdPrefix() {
+            return transactionIdPrefix;
+        }
+
+        public void setTransactionIdPrefix(String transactionIdPrefix) {
+            this.transactionIdPrefix = transactionIdPrefix;
+        }
+    }
+}
@@ -2,21 +2,55 @@ package com.virtualbank.common.outbox;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaOperations;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Polls the outbox and forwards unsent rows to Kafka, marking each row sent only
- * after the broker acknowledges it. Runs on a short fixed delay. In production
- * this would typically be replaced by change-data-capture (Debezium); the
- * polling relay is used here because it needs no extra infrastructure and makes
- * the pattern obvious. Enabled by {@code vbank.outbox.enabled=true}.
+ * Polls the outbox and forwards unsent rows to Kafka, marking rows sent only
+ * after the broker acknowledges them. Runs on a short fixed delay. It is the
+ * default because it needs nothing beyond the table; {@link OutboxCdcRelay}
+ * tails logical replication instead and takes the polling load off the primary.
+ * Enabled by {@code vbank.outbox.enabled=true} with {@code vbank.outbox.mode=poll}.
+ *
+ * <p>A batch is pipelined: every send is fired before any acknowledgement is
+ * awaited, up to {@code vbank.outbox.max-in-flight} outstanding at once, and the
+ * acknowledged rows are marked sent in one bulk update. The claim only hands out
+ * the oldest unsent row of each message key, so a batch never holds two rows for
+ * one key and can be sent all at once; the next row for a key is claimed by a
+ * later pass, after this one is marked sent, which keeps per-key order intact.
+ *
+ * <p>Rows are claimed with {@code FOR UPDATE SKIP LOCKED} and the claim lasts
+ * for the relay's transaction, so any number of service replicas can run a relay
+ * against the same table: each pass takes rows no other instance holds, and the
+ * row locks fall away when the acknowledged rows are marked sent and the
+ * transaction commits. See {@link OutboxRepository#claimBatch(int, Instant)}.
+ *
+ * <p>With {@code vbank.outbox.notify.enabled=true} an {@link OutboxNotificationListener}
+ * calls {@link #publishBatch()} the moment a producing transaction commits, and
+ * the scheduled poll only catches what a notification missed. An
+ * {@link OutboxFastPath} goes further and publishes a transaction's own rows
+ * from an after-commit hook through {@link #publishClaimed(List)}.
+ *
+ * <p>A failed row backs off exponentially with jitter and is parked after
+ * {@code vbank.outbox.retry.max-attempts} failures; the claim query skips both,
+ * so healthy rows keep the whole batch. Parked rows are listed and replayed
+ * through the {@code outbox} actuator endpoint.
+ *
+ * <p>Batch sizes, ack latency and failed attempts are recorded through {@link OutboxMetrics}.
+ * When the template is transactional ({@link OutboxProducer}), each batch is one
+ * Kafka transaction and is marked sent only if the whole batch committed.
  */
 public class OutboxRelay {
 
@@ -25,32 +59,167 @@ public class OutboxRelay {
     private final OutboxRepository repository;
     private final KafkaTemplate<String, String> kafka;
     private final Clock clock;
+    private final OutboxProperties properties;
+    private final OutboxBackoff backoff;
+    private final Semaphore inFlight;
+    private final OutboxMetrics metrics;
 
-    public OutboxRelay(OutboxRepository repository, KafkaTemplate<String, String> kafka, Clock clock) {
+    public OutboxRelay(OutboxRepository repository, KafkaTemplate<String, String> kafka, Clock clock,
+                       OutboxProperties properties, OutboxMetrics metrics) {
         this.repository = repository;
         this.kafka = kafka;
         this.clock = clock;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.backoff = new OutboxBackoff(properties.getRetry());
+        this.inFlight = new Semaphore(Math.max(1, properties.getMaxInFlight()));
     }
 
     @Scheduled(fixedDelayString = "${vbank.outbox.poll-interval-ms:500}")
     @Transactional
     public void publishPending() {
-        List<OutboxEntry> pending = repository.findTop100BySentAtIsNullOrderByCreatedAtAsc();
-        for (OutboxEntry entry : pending) {
+        publishBatch();
+    }
+
+    /**
+     * Claims and publishes one batch. Returns how many rows were claimed, so a
+     * caller woken by a notification can keep draining while batches come back full.
+     */
+    @Transactional
+    public int publishBatch() {
+        List<OutboxEntry> pending = repository.claimBatch(properties.getBatchSize(), Instant.now(clock));
+        if (!pending.isEmpty()) {
+            publish(pending);
+        }
+        return pending.size();
+    }
+
+    /**
+     * Publishes specific rows, the ones a transaction has just committed. The rows
+     * are claimed with the same rules as a batch, so a row already taken by a relay
+     * pass, already sent, or queued behind an older row for its key is skipped here
+     * and left to the relay.
+     */
+    @Transactional
+    public void publishClaimed(List<String> ids) {
+        List<OutboxEntry> claimed = repository.claimByIds(ids, Instant.now(clock));
+        if (!claimed.isEmpty()) {
+            publish(claimed);
+        }
+    }
+
+    private void publish(List<OutboxEntry> batch) {
+        metrics.batch(batch.size());
+        List<String> acknowledged = kafka.isTransactional()
+                ? publishInTransaction(batch)
+                : sendAll(kafka, batch);
+        if (!acknowledged.isEmpty()) {
+            repository.markSent(acknowledged, Instant.now(clock));
+        }
+    }
+
+    /**
+     * Sends the batch inside one Kafka transaction. Rows are only marked sent once
+     * the transaction commits; if any row of the batch is not acknowledged the
+     * transaction aborts, so none of it becomes visible to read_committed
+     * consumers and the whole batch stays unsent for the next pass.
+     */
+    private List<String> publishInTransaction(List<OutboxEntry> batch) {
+        try {
+            return kafka.executeInTransaction(operations -> {
+                List<String> acknowledged = sendAll(operations, batch);
+                if (acknowledged.size() < batch.size()) {
+                    throw new IllegalStateException((batch.size() - acknowledged.size())
+                            + " of " + batch.size() + " outbox rows were not acknowledged");
+                }
+                return acknowledged;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay aborted the Kafka transaction for {} rows, they will be retried", batch.size(), e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Fires every send of the batch, then collects the acknowledgements and returns
+     * the ids the broker acknowledged. The batch holds at most one row per key, so
+     * the sends need no ordering among themselves.
+     */
+    private List<String> sendAll(KafkaOperations<String, String> operations, List<OutboxEntry> batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getSendTimeoutMs());
+        List<Pending> sends = new ArrayList<>(batch.size());
+        for (OutboxEntry entry : batch) {
+            Pending send = send(operations, entry);
+            if (send == null) {
+                // Interrupted while waiting for an in-flight slot: collect what is already out and stop.
+                break;
+            }
+            sends.add(send);
+        }
+        return await(sends, deadline);
+    }
+
+    private Pending send(KafkaOperations<String, String> operations, OutboxEntry entry) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            CompletableFuture<?> ack = operations.send(entry.getTopic(), entry.getMessageKey(), entry.getPayload())
+                    .whenComplete((result, error) -> {
+                        inFlight.release();
+                        if (error == null) {
+                            metrics.published(entry.getTopic(), entry.getCreatedAt());
+                        }
+                    });
+            return new Pending(entry, ack);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            return new Pending(entry, CompletableFuture.failedFuture(e));
+        }
+    }
+
+    /** Collects the acknowledgements; once interrupted, the rows still outstanding count as failed. */
+    private List<String> await(List<Pending> sends, long deadline) {
+        List<String> acknowledged = new ArrayList<>(sends.size());
+        boolean interrupted = false;
+        for (Pending send : sends) {
+            OutboxEntry entry = send.entry();
+            if (interrupted) {
+                recordFailure(entry, "relay interrupted");
+                continue;
+            }
             try {
-                kafka.send(entry.getTopic(), entry.getMessageKey(), entry.getPayload())
-                        .get(10, TimeUnit.SECONDS);
-                entry.markSent(Instant.now(clock));
+                send.ack().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                acknowledged.add(entry.getId());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                entry.recordFailedAttempt();
+                interrupted = true;
+                recordFailure(entry, "relay interrupted");
                 log.warn("Outbox relay interrupted while publishing {}", entry.getId());
-                return;
-            } catch (Exception e) {
-                entry.recordFailedAttempt();
-                log.warn("Outbox relay could not publish {} (attempt {}), will retry",
-                        entry.getId(), entry.getAttempts(), e);
+            } catch (ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                recordFailure(entry, cause.toString());
+                if (entry.isParked()) {
+                    log.error("Outbox relay parked {} after {} failed attempts", entry.getId(), entry.getAttempts(), cause);
+                } else {
+                    log.warn("Outbox relay could not publish {} (attempt {}), retrying after {}",
+                            entry.getId(), entry.getAttempts(), entry.getNextAttemptAt(), cause);
+                }
             }
         }
+        return acknowledged;
+    }
+
+    private void recordFailure(OutboxEntry entry, String error) {
+        metrics.failedAttempt(entry.getTopic());
+        Instant now = Instant.now(clock);
+        entry.recordFailedAttempt(now, backoff.nextAttempt(now, entry.getAttempts() + 1),
+                backoff.maxAttempts(), error);
+    }
+
+    private record Pending(OutboxEntry entry, CompletableFuture<?> ack) {
     }
 }
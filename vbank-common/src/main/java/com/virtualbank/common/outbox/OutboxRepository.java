@@ -1,11 +1,110 @@
 package com.virtualbank.common.outbox;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface OutboxRepository extends JpaRepository<OutboxEntry, String> {
 
-    /** The relay drains unsent rows oldest first so per-aggregate ordering is preserved. */
-    List<OutboxEntry> findTop100BySentAtIsNullOrderByCreatedAtAsc();
+    /**
+     * Claims up to {@code limit} unsent rows for this relay instance, oldest first.
+     * {@code FOR UPDATE SKIP LOCKED} row-locks the claimed rows until the relay's
+     * transaction ends and makes every other instance step past them, so N relays
+     * split the backlog instead of publishing it N times. Only the head row of each
+     * message key is claimable (no older unsent row shares its key), which keeps
+     * per-key order across instances: a later row for a key cannot be taken by
+     * another relay while an earlier one is still in flight.
+     *
+     * <p>Rows that are backing off or parked are not claimed, so a few poison rows
+     * cannot fill the batch, but they still hold back later rows for their own key.
+     */
+    @Query(value = """
+            select o.* from outbox o
+            where o.sent_at is null
+              and o.parked_at is null
+              and (o.next_attempt_at is null or o.next_attempt_at <= :now)
+              and not exists (
+                  select 1 from outbox p
+                  where p.message_key = o.message_key
+                    and p.sent_at is null
+                    and (p.created_at, p.id) < (o.created_at, o.id))
+            order by o.created_at, o.id
+            limit :limit
+            for update of o skip locked
+            """, nativeQuery = true)
+    List<OutboxEntry> claimBatch(@Param("limit") int limit, @Param("now") Instant now);
+
+    /**
+     * Claims specific unsent rows by id under the same rules as {@link #claimBatch(int, Instant)}:
+     * rows locked by another relay, already sent, or behind an older unsent row for
+     * their key are left out.
+     */
+    @Query(value = """
+            select o.* from outbox o
+            where o.id in (:ids)
+              and o.sent_at is null
+              and o.parked_at is null
+              and (o.next_attempt_at is null or o.next_attempt_at <= :now)
+              and not exists (
+                  select 1 from outbox p
+                  where p.message_key = o.message_key
+                    and p.sent_at is null
+                    and (p.created_at, p.id) < (o.created_at, o.id))
+            order by o.created_at, o.id
+            for update of o skip locked
+            """, nativeQuery = true)
+    List<OutboxEntry> claimByIds(@Param("ids") Collection<String> ids, @Param("now") Instant now);
+
+    List<OutboxEntry> findByParkedAtIsNotNullOrderByCreatedAtAsc(Limit limit);
+
+    /** Returns a parked row to the relay with a fresh attempt budget. */
+    @Modifying
+    @Query("""
+            update OutboxEntry e
+            set e.parkedAt = null, e.nextAttemptAt = null, e.attempts = 0
+            where e.parkedAt is not null and e.id = :id
+            """)
+    int unpark(@Param("id") String id);
+
+    /** Returns every parked row to the relay with a fresh attempt budget. */
+    @Modifying
+    @Query("""
+            update OutboxEntry e
+            set e.parkedAt = null, e.nextAttemptAt = null, e.attempts = 0
+            where e.parkedAt is not null
+            """)
+    int unparkAll();
+
+    /** Marks a whole acknowledged batch sent in one statement instead of one dirty-checked update per row. */
+    @Modifying(flushAutomatically = true)
+    @Query("update OutboxEntry e set e.sentAt = :sentAt where e.id in :ids")
+    int markSent(@Param("ids") Collection<String> ids, @Param("sentAt") Instant sentAt);
+
+    /** Unsent rows per topic, for the backlog gauges in {@link OutboxMetrics}; parked rows are counted apart. */
+    @Query("""
+            select e.topic as topic,
+                   sum(case when e.parkedAt is null then 1 else 0 end) as unsent,
+                   sum(case when e.parkedAt is not null then 1 else 0 end) as parked,
+                   min(case when e.parkedAt is null then e.createdAt end) as oldest
+            from OutboxEntry e
+            where e.sentAt is null
+            group by e.topic
+            """)
+    List<TopicBacklog> backlogByTopic();
+
+    interface TopicBacklog {
+        String getTopic();
+
+        long getUnsent();
+
+        long getParked();
+
+        Instant getOldest();
+    }
 }
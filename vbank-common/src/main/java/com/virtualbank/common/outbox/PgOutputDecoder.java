@@ -0,0 +1,145 @@
+package com.virtualbank.common.outbox;
+
+import org.postgresql.replication.LogSequenceNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the pgoutput (protocol version 1) messages {@link OutboxCdcRelay} acts
+ * on: begin, commit, relation and insert. Relation messages describe a table's
+ * columns and are remembered by oid, since inserts only carry values in column
+ * order; the server sends one before the first insert into a table on every new
+ * stream, and again whenever the table changes. Everything else decodes to null.
+ */
+final class PgOutputDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(PgOutputDecoder.class);
+
+    /** Postgres' ISO text form of a timestamptz, as pgoutput sends it: {@code 2025-01-31 09:15:02.123456+00}. */
+    private static final DateTimeFormatter TIMESTAMPTZ = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .appendOffset("+HH:mm", "+00")
+            .toFormatter();
+
+    static final Begin BEGIN = new Begin();
+
+    /** Column names of each relation the stream has described, by relation oid. */
+    private final Map<Integer, List<String>> relations = new HashMap<>();
+
+    sealed interface Message permits Begin, Commit, Insert {
+    }
+
+    record Begin() implements Message {
+    }
+
+    /** The end of a committed transaction, the position to confirm once its rows are sent. */
+    record Commit(LogSequenceNumber end) implements Message {
+    }
+
+    record Insert(Row row) implements Message {
+    }
+
+    record Row(String id, String topic, String key, String payload, Instant createdAt) {
+    }
+
+    /** Forgets the relations described so far; a new stream describes them again. */
+    void reset() {
+        relations.clear();
+    }
+
+    Message decode(ByteBuffer message) {
+        return switch ((char) message.get()) {
+            case 'B' -> BEGIN;
+            case 'C' -> {
+                message.get();      // flags
+                message.getLong();  // commit LSN
+                yield new Commit(LogSequenceNumber.valueOf(message.getLong()));
+            }
+            case 'R' -> {
+                relation(message);
+                yield null;
+            }
+            case 'I' -> {
+                Row row = insert(message);
+                yield row == null ? null : new Insert(row);
+            }
+            // Type, origin, update, delete and truncate messages carry nothing to publish.
+            default -> null;
+        };
+    }
+
+    private void relation(ByteBuffer message) {
+        int oid = message.getInt();
+        cstring(message);                   // namespace
+        cstring(message);                   // relation name
+        message.get();                      // replica identity
+        int columns = message.getShort();
+        List<String> names = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            message.get();                  // flags
+            names.add(cstring(message));
+            message.getInt();               // type oid
+            message.getInt();               // type modifier
+        }
+        relations.put(oid, names);
+    }
+
+    private Row insert(ByteBuffer message) {
+        int oid = message.getInt();
+        List<String> names = relations.get(oid);
+        if (names == null) {
+            // Never sent by a well-behaved server; replaying the stream describes it again.
+            throw new IllegalStateException("Insert into relation " + oid + " before it was described");
+        }
+        message.get();                      // 'N', a new tuple follows
+        int columns = message.getShort();
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < columns; i++) {
+            char kind = (char) message.get();
+            if (kind == 't') {
+                byte[] value = new byte[message.getInt()];
+                message.get(value);
+                values.put(names.get(i), new String(value, StandardCharsets.UTF_8));
+            }
+            // 'n' is null and 'u' an unchanged TOAST value, which an insert never has.
+        }
+        String id = values.get("id");
+        if (id == null) {
+            log.warn("Outbox CDC relay skipped an insert without an id: {}", values.keySet());
+            return null;
+        }
+        return new Row(id, values.get("topic"), values.get("message_key"), values.get("payload"),
+                timestamp(values.get("created_at")));
+    }
+
+    private static Instant timestamp(String text) {
+        try {
+            return text == null ? null : OffsetDateTime.parse(text, TIMESTAMPTZ).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String cstring(ByteBuffer message) {
+        int start = message.position();
+        while (message.get() != 0) {
+            // advance to the terminating zero byte
+        }
+        return new String(message.array(), message.arrayOffset() + start,
+                message.position() - start - 1, StandardCharsets.UTF_8);
+    }
+}
@@ -14,7 +14,9 @@ import org.springframework.security.web.SecurityFilterChain;
 /**
  * Default zero-trust resource-server configuration for the servlet services:
  * stateless, CSRF off (no cookies), every request authenticated by a validated
- * RS256 JWT except health, metrics, and API docs. The token is validated against
+ * RS256 JWT except health, metrics, and API docs. Any other actuator endpoint,
+ * such as the outbox replay or hot-account promotion, also needs the
+ * {@value #OPERATOR_SCOPE} scope, which customer tokens never carry. The token is validated against
  * user-service's JWKS via {@code spring.security.oauth2.resourceserver.jwt.jwk-set-uri}.
  *
  * <p>Services that need their own public endpoints (for example user-service's
@@ -26,6 +28,8 @@ import org.springframework.security.web.SecurityFilterChain;
 @EnableMethodSecurity
 public class ResourceServerSecurity {
 
+    public static final String OPERATOR_SCOPE = "vbank.operator";
+
     @Bean
     @ConditionalOnMissingBean(SecurityFilterChain.class)
     public SecurityFilterChain defaultFilterChain(HttpSecurity http) throws Exception {
@@ -40,6 +44,7 @@ public class ResourceServerSecurity {
                                 "/swagger-ui/**",
                                 "/swagger-ui.html")
                         .permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("SCOPE_" + OPERATOR_SCOPE)
                         .anyRequest().authenticated())
                 .oauth2ResourceServer(oauth -> oauth.jwt(Customizer.withDefaults()));
         return http.build();
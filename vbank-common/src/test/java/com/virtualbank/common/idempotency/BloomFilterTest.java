@@ -0,0 +1,38 @@
+package com.virtualbank.common.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The idempotency guard skips the processed_events read whenever the filter says
+ * an id is new, so a false negative would reprocess a transfer. None is allowed;
+ * false positives only cost a read and must stay near the configured rate.
+ */
+class BloomFilterTest {
+
+    @Test
+    void neverForgetsAnIdAndRarelyClaimsAStrangerOne() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = UUID.randomUUID().toString();
+            filter.put(id);
+            added.add(id);
+        }
+
+        assertThat(added).allMatch(filter::mightContain);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+}
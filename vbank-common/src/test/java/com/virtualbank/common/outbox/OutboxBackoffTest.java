@@ -0,0 +1,57 @@
+package com.virtualbank.common.outbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The relay schedules every retry from this backoff, so a wrong exponent or an
+ * uncapped wait would keep a failed row away far longer than configured, and
+ * jitter that pushed past the computed wait would break the cap.
+ */
+class OutboxBackoffTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void waitDoublesWithEachFailureUpToTheCap() {
+        OutboxBackoff backoff = new OutboxBackoff(retry(0.0));
+
+        assertThat(waitAfter(backoff, 1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(waitAfter(backoff, 2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(waitAfter(backoff, 4)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(waitAfter(backoff, 20)).isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void jitterOnlyShortensTheWait() {
+        OutboxBackoff backoff = new OutboxBackoff(retry(0.5));
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(waitAfter(backoff, 3)).isBetween(Duration.ofSeconds(2), Duration.ofSeconds(4));
+            assertThat(waitAfter(backoff, 20)).isBetween(Duration.ofSeconds(30), Duration.ofSeconds(60));
+        }
+    }
+
+    @Test
+    void maxAttemptsComesFromTheSettings() {
+        assertThat(new OutboxBackoff(retry(0.0)).maxAttempts()).isEqualTo(5);
+    }
+
+    private static Duration waitAfter(OutboxBackoff backoff, int attempts) {
+        return Duration.between(NOW, backoff.nextAttempt(NOW, attempts));
+    }
+
+    private static OutboxProperties.Retry retry(double jitter) {
+        OutboxProperties.Retry retry = new OutboxProperties.Retry();
+        retry.setInitialBackoffMs(1_000);
+        retry.setMultiplier(2.0);
+        retry.setMaxBackoffMs(60_000);
+        retry.setJitter(jitter);
+        retry.setMaxAttempts(5);
+        return retry;
+    }
+}
@@ -0,0 +1,171 @@
+package com.virtualbank.common.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.replication.LogSequenceNumber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The CDC relay confirms WAL positions from what this decoder reads, so a
+ * misread commit would confirm past unsent rows and a misread insert would
+ * publish the wrong payload. Messages are built byte for byte as pgoutput
+ * protocol version 1 sends them.
+ */
+class PgOutputDecoderTest {
+
+    private static final int OUTBOX_OID = 16384;
+    private static final List<String> OUTBOX_COLUMNS = List.of(
+            "id", "topic", "message_key", "payload", "type", "created_at", "sent_at");
+
+    private final PgOutputDecoder decoder = new PgOutputDecoder();
+
+    @Test
+    void commitCarriesTheEndOfTheTransaction() throws IOException {
+        assertThat(decoder.decode(begin(0x16B3748L))).isSameAs(PgOutputDecoder.BEGIN);
+
+        PgOutputDecoder.Message commit = decoder.decode(commit(0x16B3748L, 0x16B3778L));
+
+        assertThat(commit).isEqualTo(new PgOutputDecoder.Commit(LogSequenceNumber.valueOf(0x16B3778L)));
+    }
+
+    @Test
+    void insertIsReadByTheColumnsItsRelationDescribed() throws IOException {
+        assertThat(decoder.decode(relation(OUTBOX_OID, OUTBOX_COLUMNS))).isNull();
+
+        PgOutputDecoder.Message insert = decoder.decode(insert(OUTBOX_OID,
+                "evt-1", "vbank.transfers", "acc-1", "{\"amount\":\"10.00\"}", "TransferRequested",
+                "2025-01-31 09:15:02.123456+00", null));
+
+        assertThat(insert).isEqualTo(new PgOutputDecoder.Insert(new PgOutputDecoder.Row(
+                "evt-1", "vbank.transfers", "acc-1", "{\"amount\":\"10.00\"}",
+                Instant.parse("2025-01-31T09:15:02.123456Z"))));
+    }
+
+    @Test
+    void aRedescribedRelationReplacesItsColumns() throws IOException {
+        decoder.decode(relation(OUTBOX_OID, OUTBOX_COLUMNS));
+        // A column added by a migration arrives as a new relation message.
+        decoder.decode(relation(OUTBOX_OID, List.of("id", "topic", "message_key", "payload", "created_at", "seq")));
+
+        PgOutputDecoder.Insert insert = (PgOutputDecoder.Insert) decoder.decode(insert(OUTBOX_OID,
+                "evt-2", "vbank.accounts", "acc-2", "{}", "2025-01-31 09:15:02+00", "42"));
+
+        assertThat(insert.row().createdAt()).isEqualTo(Instant.parse("2025-01-31T09:15:02Z"));
+        assertThat(insert.row().key()).isEqualTo("acc-2");
+    }
+
+    @Test
+    void anUnreadableTimestampOnlyLosesTheLatencySample() throws IOException {
+        decoder.decode(relation(OUTBOX_OID, OUTBOX_COLUMNS));
+
+        PgOutputDecoder.Insert insert = (PgOutputDecoder.Insert) decoder.decode(insert(OUTBOX_OID,
+                "evt-3", "vbank.transfers", "acc-3", "{}", "TransferRequested", "infinity", null));
+
+        assertThat(insert.row().id()).isEqualTo("evt-3");
+        assertThat(insert.row().createdAt()).isNull();
+    }
+
+    @Test
+    void insertWithoutAnIdIsSkipped() throws IOException {
+        decoder.decode(relation(OUTBOX_OID, OUTBOX_COLUMNS));
+
+        assertThat(decoder.decode(insert(OUTBOX_OID,
+                null, "vbank.transfers", "acc-4", "{}", "TransferRequested", null, null))).isNull();
+    }
+
+    @Test
+    void insertIntoAnUndescribedRelationFailsTheStream() throws IOException {
+        decoder.decode(relation(OUTBOX_OID, OUTBOX_COLUMNS));
+        decoder.reset();
+
+        assertThatThrownBy(() -> decoder.decode(insert(OUTBOX_OID, "evt-5", "t", "k", "{}", "T", null, null)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void messagesWithNothingToPublishDecodeToNull() throws IOException {
+        assertThat(decoder.decode(ByteBuffer.wrap(new byte[] {'Y', 0, 0, 0, 1}))).isNull();
+        assertThat(decoder.decode(ByteBuffer.wrap(new byte[] {'O', 0, 0, 0, 0, 0, 0, 0, 1, 'x', 0}))).isNull();
+    }
+
+    private static ByteBuffer begin(long finalLsn) throws IOException {
+        return message(out -> {
+            out.writeByte('B');
+            out.writeLong(finalLsn);
+            out.writeLong(0);           // commit timestamp
+            out.writeInt(731);          // xid
+        });
+    }
+
+    private static ByteBuffer commit(long commitLsn, long endLsn) throws IOException {
+        return message(out -> {
+            out.writeByte('C');
+            out.writeByte(0);           // flags
+            out.writeLong(commitLsn);
+            out.writeLong(endLsn);
+            out.writeLong(0);           // commit timestamp
+        });
+    }
+
+    private static ByteBuffer relation(int oid, List<String> columns) throws IOException {
+        return message(out -> {
+            out.writeByte('R');
+            out.writeInt(oid);
+            cstring(out, "public");
+            cstring(out, "outbox");
+            out.writeByte('d');         // replica identity
+            out.writeShort(columns.size());
+            for (String column : columns) {
+                out.writeByte(column.equals("id") ? 1 : 0);
+                cstring(out, column);
+                out.writeInt(25);       // text
+                out.writeInt(-1);
+            }
+        });
+    }
+
+    private static ByteBuffer insert(int oid, String... values) throws IOException {
+        return message(out -> {
+            out.writeByte('I');
+            out.writeInt(oid);
+            out.writeByte('N');
+            out.writeShort(values.length);
+            for (String value : values) {
+                if (value == null) {
+                    out.writeByte('n');
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeByte('t');
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        });
+    }
+
+    private static void cstring(DataOutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+
+    private static ByteBuffer message(Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            body.write(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+}